@@ -71,9 +71,23 @@ public abstract class Subject {
 	 * relevant for the observer).
 	 */
 	final protected void notifyChange() {
-		for (Observer observer: observers) {
-			observer.update(this);
+		if (isNotificationEnabled()) {
+			for (Observer observer: observers) {
+				observer.update(this);
+			}
 		}
 	}
 
+	/**
+	 * This method can be overridden by concrete subclasses in order to
+	 * temporarily suppress the update notifications of this subject (for
+	 * example, while changes are tried out and reverted again). By default,
+	 * notifications are always enabled.
+	 *
+	 * @return true if observers should be notified of changes
+	 */
+	protected boolean isNotificationEnabled() {
+		return true;
+	}
+
 }
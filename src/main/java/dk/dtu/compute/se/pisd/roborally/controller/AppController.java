@@ -26,6 +26,7 @@ import dk.dtu.compute.se.pisd.designpatterns.observer.Subject;
 
 import dk.dtu.compute.se.pisd.roborally.RoboRally;
 
+import dk.dtu.compute.se.pisd.roborally.fileaccess.GameFile;
 import dk.dtu.compute.se.pisd.roborally.model.Board;
 import dk.dtu.compute.se.pisd.roborally.model.Player;
 
@@ -34,11 +35,18 @@ import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.ButtonType;
 import javafx.scene.control.ChoiceDialog;
+import javafx.scene.control.TextInputDialog;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * ...
@@ -51,6 +59,10 @@ public class AppController implements Observer {
     final private List<Integer> PLAYER_NUMBER_OPTIONS = Arrays.asList(2, 3, 4, 5, 6);
     final private List<String> PLAYER_COLORS = Arrays.asList("red", "green", "blue", "orange", "grey", "magenta");
 
+    // the directory of the saved games, which are compressed (see GameFile)
+    final private Path SAVED_GAMES = Paths.get(System.getProperty("user.home"), ".roborally", "games");
+    final private String SAVED_GAME_EXTENSION = ".rrsv";
+
     final private RoboRally roboRally;
 
     private GameController gameController;
@@ -78,6 +90,9 @@ public class AppController implements Observer {
             //     here we just create an empty board with the required number of players.
             Board board = new Board(8,8);
             gameController = new GameController(board);
+            // the GUI changes the game directly, so commands submitted by
+            // other threads must be executed by the JavaFX application thread too
+            gameController.setOwner(Platform::runLater);
             int no = result.get();
             for (int i = 0; i < no; i++) {
                 Player player = new Player(board, PLAYER_COLORS.get(i), "Player " + (i + 1));
@@ -94,15 +109,102 @@ public class AppController implements Observer {
     }
 
     public void saveGame() {
-        // XXX needs to be implemented eventually
+        if (gameController == null) {
+            return;
+        }
+        TextInputDialog dialog = new TextInputDialog("game");
+        dialog.setTitle("Save game");
+        dialog.setHeaderText("Enter the name of the saved game");
+        Optional<String> result = dialog.showAndWait();
+
+        if (result.isPresent() && !result.get().isBlank()) {
+            String name = result.get().trim();
+            if (!isValidGameName(name)) {
+                showError("The game could not be saved",
+                        "The name must not start with a dot or contain a path separator.");
+                return;
+            }
+            try {
+                Files.createDirectories(SAVED_GAMES);
+                GameFile.save(gameController.board, SAVED_GAMES.resolve(name + SAVED_GAME_EXTENSION), true);
+            } catch (IOException e) {
+                showError("The game could not be saved", e);
+            }
+        }
     }
 
     public void loadGame() {
-        // XXX needs to be implemented eventually
-        // for now, we just create a new game
-        if (gameController == null) {
+        if (gameController != null && !stopGame()) {
+            return;
+        }
+        List<String> games = getSavedGames();
+        if (games.isEmpty()) {
+            // there is nothing to load, so we just create a new game
             newGame();
+            return;
         }
+        ChoiceDialog<String> dialog = new ChoiceDialog<>(games.get(0), games);
+        dialog.setTitle("Load game");
+        dialog.setHeaderText("Select the game to load");
+        Optional<String> result = dialog.showAndWait();
+
+        if (result.isPresent()) {
+            try {
+                Board board = GameFile.load(SAVED_GAMES.resolve(result.get() + SAVED_GAME_EXTENSION));
+                gameController = new GameController(board);
+                gameController.setOwner(Platform::runLater);
+                roboRally.createBoardView(gameController);
+            } catch (IOException e) {
+                showError("The game could not be loaded", e);
+            }
+        }
+    }
+
+    private List<String> getSavedGames() {
+        if (!Files.isDirectory(SAVED_GAMES)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(SAVED_GAMES)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(SAVED_GAME_EXTENSION))
+                    .map(name -> name.substring(0, name.length() - SAVED_GAME_EXTENSION.length()))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            return List.of();
+        }
+    }
+
+    /**
+     * Returns whether the given name can be used as the name of a saved game,
+     * i.e. whether it is a plain file name, which cannot refer to a file
+     * outside of the directory of the saved games (like "../game" or "/tmp/game").
+     *
+     * @param name the name of the game
+     * @return true if the name is valid; false otherwise
+     */
+    static boolean isValidGameName(String name) {
+        if (name == null || name.isBlank() || name.startsWith(".")) {
+            return false;
+        }
+        for (char c: name.toCharArray()) {
+            if (c == '/' || c == '\\' || c == ':' || Character.isISOControl(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void showError(@NotNull String message, @NotNull Exception e) {
+        showError(message, e.getMessage());
+    }
+
+    private void showError(@NotNull String message, String details) {
+        Alert alert = new Alert(AlertType.ERROR);
+        alert.setTitle("RoboRally");
+        alert.setHeaderText(message);
+        alert.setContentText(details);
+        alert.showAndWait();
     }
 
     /**
@@ -117,7 +219,7 @@ public class AppController implements Observer {
     public boolean stopGame() {
         if (gameController != null) {
 
-            // here we save the game (without asking the user).
+            // here we give the user the option to save the game
             saveGame();
 
             gameController = null;
@@ -0,0 +1,74 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.controller;
+
+import dk.dtu.compute.se.pisd.roborally.model.Heading;
+import dk.dtu.compute.se.pisd.roborally.model.Player;
+import dk.dtu.compute.se.pisd.roborally.model.Space;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A laser mounted on a space of the board, which fires in its heading and
+ * damages the first player it hits: the player on the space of the laser
+ * itself, or the first player along the line of sight of the laser (see
+ * {@link LaserTable}). Other than the other actions, a laser is activated
+ * also when there is no player on its space.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public class BoardLaser extends FieldAction {
+
+    final private Heading heading;
+
+    public BoardLaser(@NotNull Heading heading) {
+        this.heading = heading;
+    }
+
+    public Heading getHeading() {
+        return heading;
+    }
+
+    @Override
+    public boolean doAction(@NotNull GameController gameController, @NotNull Space space) {
+        Player target = space.getPlayer();
+        if (target == null) {
+            target = gameController.getLaserTable().getTarget(space, heading);
+        }
+        if (target != null) {
+            gameController.damage(target, 1);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof BoardLaser && ((BoardLaser) o).heading == heading;
+    }
+
+    @Override
+    public int hashCode() {
+        return heading.ordinal();
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.controller;
+
+import dk.dtu.compute.se.pisd.roborally.model.Command;
+import dk.dtu.compute.se.pisd.roborally.model.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A strategy of a computer player (bot), which programs the registers of
+ * a player from the player's command cards in the programming phase, and
+ * chooses the options of interactive command cards.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public interface BotStrategy {
+
+    /**
+     * Programs the registers of the given player; the cards must be moved
+     * from the player's card fields to its program fields by
+     * {@link GameController#moveCards(dk.dtu.compute.se.pisd.roborally.model.CommandCardField, dk.dtu.compute.se.pisd.roborally.model.CommandCardField)}.
+     * This method is called in the programming phase only.
+     *
+     * @param gameController the game controller of the game
+     * @param player the player to be programmed
+     * @param random the random number generator of the game
+     */
+    void program(@NotNull GameController gameController, @NotNull Player player, @NotNull Random random);
+
+    /**
+     * Chooses one of the options of the interactive command card, which
+     * the given player executes. By default, the option is chosen randomly.
+     *
+     * @param gameController the game controller of the game
+     * @param player the player executing the interactive card
+     * @param options the options of the card
+     * @param random the random number generator of the game
+     * @return the chosen option
+     */
+    default Command choose(@NotNull GameController gameController, @NotNull Player player,
+                           @NotNull List<Command> options, @NotNull Random random) {
+        return options.get(random.nextInt(options.size()));
+    }
+
+    /**
+     * @return the name of the strategy as used in reports
+     */
+    String getName();
+
+}
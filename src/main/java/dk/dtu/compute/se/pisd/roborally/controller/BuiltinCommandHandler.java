@@ -0,0 +1,64 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.controller;
+
+import dk.dtu.compute.se.pisd.roborally.model.Command;
+import dk.dtu.compute.se.pisd.roborally.model.Player;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The handler of the basic commands of the game. A single handler covers
+ * all basic commands, so that the dispatch in the game controller sees a
+ * single class of handlers, unless custom handlers are registered.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+final class BuiltinCommandHandler implements CommandHandler {
+
+    static final BuiltinCommandHandler INSTANCE = new BuiltinCommandHandler();
+
+    private BuiltinCommandHandler() {
+    }
+
+    @Override
+    public void execute(@NotNull GameController gameController, @NotNull Player player, @NotNull Command command) {
+        switch (command) {
+            case FORWARD:
+                gameController.moveForward(player);
+                break;
+            case RIGHT:
+                gameController.turnRight(player);
+                break;
+            case LEFT:
+                gameController.turnLeft(player);
+                break;
+            case FAST_FORWARD:
+                gameController.fastForward(player);
+                break;
+            default:
+                // interactive commands are executed by the option chosen
+                // by the player; other commands do nothing (for now)
+        }
+    }
+
+}
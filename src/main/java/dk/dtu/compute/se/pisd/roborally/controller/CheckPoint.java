@@ -0,0 +1,65 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.controller;
+
+import dk.dtu.compute.se.pisd.roborally.model.Player;
+import dk.dtu.compute.se.pisd.roborally.model.Space;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A checkpoint. The checkpoints of a board are numbered starting with 1,
+ * and must be reached by the players in the order of their numbers; a
+ * player ending a register on the next checkpoint in this order reaches
+ * this checkpoint (see {@link Player#getLastCheckpoint()}).
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public class CheckPoint extends FieldAction {
+
+    final private int number;
+
+    public CheckPoint(int number) {
+        this.number = number;
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    @Override
+    public boolean doAction(@NotNull GameController gameController, @NotNull Space space) {
+        Player player = space.getPlayer();
+        return player != null && gameController.reachCheckpoint(player, number);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CheckPoint && ((CheckPoint) o).number == number;
+    }
+
+    @Override
+    public int hashCode() {
+        return number;
+    }
+
+}
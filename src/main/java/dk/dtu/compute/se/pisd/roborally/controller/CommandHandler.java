@@ -0,0 +1,48 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.controller;
+
+import dk.dtu.compute.se.pisd.roborally.model.Command;
+import dk.dtu.compute.se.pisd.roborally.model.Player;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Executes the command of a command card for a player (see
+ * {@link CommandRegistry}). A handler changes the board only by the
+ * operations of the game controller, so that its changes can be undone.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+@FunctionalInterface
+public interface CommandHandler {
+
+    /**
+     * Executes the given command for the given player.
+     *
+     * @param gameController the game controller of the game
+     * @param player the player executing the command
+     * @param command the command to be executed
+     */
+    void execute(@NotNull GameController gameController, @NotNull Player player, @NotNull Command command);
+
+}
@@ -0,0 +1,49 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.controller;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Provides handlers for commands, which are registered in the default
+ * command registry (see {@link CommandRegistry#getDefault()}). Providers
+ * are found by the {@link java.util.ServiceLoader}, so that the behaviour
+ * of the existing commands can be replaced by putting a jar on the class
+ * path, which declares its provider in
+ * <code>META-INF/services/dk.dtu.compute.se.pisd.roborally.controller.CommandHandlerProvider</code>.
+ * Providers cannot add new commands, though: the commands are the constants
+ * of {@link dk.dtu.compute.se.pisd.roborally.model.Command}, so a new kind of
+ * card still needs a new constant (see {@link CommandRegistry}).
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public interface CommandHandlerProvider {
+
+    /**
+     * Registers the handlers of this provider in the given registry.
+     *
+     * @param registry the registry
+     */
+    void registerHandlers(@NotNull CommandRegistry registry);
+
+}
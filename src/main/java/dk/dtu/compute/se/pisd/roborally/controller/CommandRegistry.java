@@ -0,0 +1,120 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.controller;
+
+import dk.dtu.compute.se.pisd.roborally.model.Command;
+import dk.dtu.compute.se.pisd.roborally.model.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.ServiceLoader;
+
+/**
+ * Maps the commands of command cards to their handlers (see {@link CommandHandler}),
+ * which the game controller uses for executing the cards. The handlers are
+ * kept in an array indexed by the ordinal of the command, so that finding
+ * the handler of a command is a single array access. Initially, all
+ * commands are handled by the same built-in handler; registering a handler
+ * replaces the handler of a single command.
+ *
+ * The array is replaced (not changed) when a handler is registered, so
+ * that registries can be shared between games running on different
+ * threads; a game sees a new handler with its next command at the latest.
+ *
+ * Only the handlers of the existing commands can be registered at runtime.
+ * Since cards are identified by their command (in decks, in the protocol
+ * and in saved games), a new kind of card needs a new constant of
+ * {@link Command}, and the game must be compiled again; the behaviour of
+ * the card, however, is defined by its handler only.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public class CommandRegistry {
+
+    private static volatile CommandRegistry defaultRegistry;
+
+    private volatile CommandHandler[] handlers;
+
+    /**
+     * Creates a registry, in which all commands are handled by the built-in
+     * handler of the game.
+     */
+    public CommandRegistry() {
+        handlers = new CommandHandler[Command.values().length];
+        Arrays.fill(handlers, BuiltinCommandHandler.INSTANCE);
+    }
+
+    /**
+     * Returns the default registry, which is used by game controllers unless
+     * they are created with another registry. When it is used first, the
+     * default registry is created with the handlers of all providers found
+     * on the class path (see {@link CommandHandlerProvider}).
+     *
+     * @return the default registry
+     */
+    public static CommandRegistry getDefault() {
+        CommandRegistry registry = defaultRegistry;
+        if (registry == null) {
+            synchronized (CommandRegistry.class) {
+                registry = defaultRegistry;
+                if (registry == null) {
+                    registry = new CommandRegistry();
+                    for (CommandHandlerProvider provider: ServiceLoader.load(CommandHandlerProvider.class)) {
+                        provider.registerHandlers(registry);
+                    }
+                    defaultRegistry = registry;
+                }
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * Registers the handler for the given command, which replaces the
+     * handler the command had before.
+     *
+     * @param command the command
+     * @param handler the handler of the command
+     */
+    public synchronized void register(@NotNull Command command, @NotNull CommandHandler handler) {
+        CommandHandler[] handlers = this.handlers.clone();
+        handlers[command.ordinal()] = handler;
+        this.handlers = handlers;
+    }
+
+    public CommandHandler getHandler(@NotNull Command command) {
+        return handlers[command.ordinal()];
+    }
+
+    /**
+     * Executes the given command for the given player by its handler.
+     *
+     * @param gameController the game controller of the game
+     * @param player the player executing the command
+     * @param command the command
+     */
+    public void execute(@NotNull GameController gameController, @NotNull Player player, @NotNull Command command) {
+        handlers[command.ordinal()].execute(gameController, player, command);
+    }
+
+}
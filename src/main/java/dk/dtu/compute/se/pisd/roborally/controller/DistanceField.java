@@ -0,0 +1,272 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.controller;
+
+import dk.dtu.compute.se.pisd.roborally.model.Board;
+import dk.dtu.compute.se.pisd.roborally.model.Heading;
+import dk.dtu.compute.se.pisd.roborally.model.Player;
+import dk.dtu.compute.se.pisd.roborally.model.Space;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The distances of all positions of a board to a checkpoint, which can be
+ * used by bots as a heuristic. The distance of a position (a space and a
+ * heading) is the minimal number of cards (forward, fast forward, turn left
+ * or turn right), which are needed to get from this position to the
+ * checkpoint, taking the walls of the board into account (but not the other
+ * players and the actions of the board).
+ *
+ * The distances depend on the layout of the board only; they are computed
+ * once by a breadth-first search backwards from the checkpoint, and shared
+ * by all boards with the same layout (see {@link Board#getLayoutSignature()}).
+ * A recently used distance field is obtained by {@link #of(Board, int)}
+ * without any computation; then, every distance is an array lookup.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public final class DistanceField {
+
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    // distances are stored as unsigned shorts; longer distances are saturated
+    private static final char NONE = Character.MAX_VALUE;
+
+    private static final int HEADINGS = Heading.values().length;
+
+    private static final int CACHE_SIZE = 64;
+
+    private static final Map<Key, DistanceField> cache = new LinkedHashMap<Key, DistanceField>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, DistanceField> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    public final int width;
+
+    public final int height;
+
+    public final int checkpoint;
+
+    public final long layoutSignature;
+
+    // the distance of position (x, y, heading) is at index (y * width + x) * HEADINGS + heading
+    private final char[] distances;
+
+    private DistanceField(@NotNull Board board, int checkpoint) {
+        this.width = board.width;
+        this.height = board.height;
+        this.checkpoint = checkpoint;
+        this.layoutSignature = board.getLayoutSignature();
+        this.distances = new char[width * height * HEADINGS];
+        Arrays.fill(distances, NONE);
+        compute(board);
+    }
+
+    /**
+     * Returns the distance field for the given checkpoint of the given board.
+     * The field is taken from the cache, if a field for a board with the same
+     * layout was computed recently; otherwise, it is computed and cached.
+     *
+     * @param board the board
+     * @param checkpoint the number of the checkpoint
+     * @return the distance field of the checkpoint
+     */
+    public static DistanceField of(@NotNull Board board, int checkpoint) {
+        Key key = new Key(board, checkpoint);
+        DistanceField field;
+        synchronized (cache) {
+            field = cache.get(key);
+        }
+        if (field == null) {
+            // computed outside of the lock, so that other threads are not blocked;
+            // two threads might compute the same field, which does not harm
+            field = new DistanceField(board, checkpoint);
+            synchronized (cache) {
+                cache.put(key, field);
+            }
+        }
+        return field;
+    }
+
+    /**
+     * Returns the distance of the given position to the checkpoint.
+     *
+     * @param x the x coordinate of the position
+     * @param y the y coordinate of the position
+     * @param heading the heading at the position
+     * @return the distance, or {@link #UNREACHABLE} if the checkpoint
+     *         cannot be reached from the position
+     */
+    public int getDistance(int x, int y, @NotNull Heading heading) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return UNREACHABLE;
+        }
+        char distance = distances[(y * width + x) * HEADINGS + heading.ordinal()];
+        return distance == NONE ? UNREACHABLE : distance;
+    }
+
+    /**
+     * Returns the distance of the player's position to the checkpoint.
+     *
+     * @param player the player
+     * @return the distance, or {@link #UNREACHABLE} if the checkpoint
+     *         cannot be reached or the player is not on the board
+     */
+    public int getDistance(@NotNull Player player) {
+        Space space = player.getSpace();
+        return space != null ? getDistance(space.x, space.y, player.getHeading()) : UNREACHABLE;
+    }
+
+    private void compute(@NotNull Board board) {
+        // the walls are taken from the layout, so that the search does not
+        // allocate the (lazily allocated) spaces of the whole board
+        int[] walls = new int[width * height];
+        for (Space space: board.getLayoutSpaces()) {
+            for (Heading heading: space.getWalls()) {
+                walls[space.y * width + space.x] |= 1 << heading.ordinal();
+            }
+        }
+
+        int[] queue = new int[distances.length];
+        int head = 0;
+        int tail = 0;
+        for (Space space: board.getElementSpaces(CheckPoint.class)) {
+            for (FieldAction action: space.getActions()) {
+                if (action instanceof CheckPoint && ((CheckPoint) action).getNumber() == checkpoint) {
+                    for (int h = 0; h < HEADINGS; h++) {
+                        int position = (space.y * width + space.x) * HEADINGS + h;
+                        if (distances[position] == NONE) {
+                            distances[position] = 0;
+                            queue[tail++] = position;
+                        }
+                    }
+                }
+            }
+        }
+
+        Heading[] headings = Heading.values();
+        while (head < tail) {
+            int position = queue[head++];
+            int cell = position / HEADINGS;
+            Heading heading = headings[position % HEADINGS];
+            char distance = (char) Math.min(distances[position] + 1, NONE - 1);
+
+            // turning right from the previous heading, or left from the next heading
+            tail = visit(cell * HEADINGS + heading.prev().ordinal(), distance, queue, tail);
+            tail = visit(cell * HEADINGS + heading.next().ordinal(), distance, queue, tail);
+
+            // moving forward from the cell behind
+            int behind = neighbour(walls, cell, heading.opposite());
+            if (behind >= 0) {
+                tail = visit(behind * HEADINGS + heading.ordinal(), distance, queue, tail);
+                // moving fast forward from two cells behind (a fast forward, whose
+                // second move is blocked, ends where a forward move ends)
+                int twoBehind = neighbour(walls, behind, heading.opposite());
+                if (twoBehind >= 0) {
+                    tail = visit(twoBehind * HEADINGS + heading.ordinal(), distance, queue, tail);
+                }
+            }
+        }
+    }
+
+    private int visit(int position, char distance, int[] queue, int tail) {
+        if (distances[position] == NONE) {
+            distances[position] = distance;
+            queue[tail++] = position;
+        }
+        return tail;
+    }
+
+    /**
+     * Computes the neighbour of a cell in the same way as
+     * {@link Board#getNeighbour(Space, Heading)}.
+     *
+     * @return the neighbour cell, or -1 if the move is blocked by a wall
+     */
+    private int neighbour(int[] walls, int cell, @NotNull Heading heading) {
+        if ((walls[cell] & (1 << heading.ordinal())) != 0) {
+            return -1;
+        }
+        int x = cell % width;
+        int y = cell / width;
+        switch (heading) {
+            case SOUTH:
+                y = (y + 1) % height;
+                break;
+            case WEST:
+                x = (x + width - 1) % width;
+                break;
+            case NORTH:
+                y = (y + height - 1) % height;
+                break;
+            case EAST:
+                x = (x + 1) % width;
+                break;
+        }
+        int neighbour = y * width + x;
+        if ((walls[neighbour] & (1 << heading.opposite().ordinal())) != 0) {
+            return -1;
+        }
+        return neighbour;
+    }
+
+    private static final class Key {
+
+        final int width;
+
+        final int height;
+
+        final long layoutSignature;
+
+        final int checkpoint;
+
+        Key(@NotNull Board board, int checkpoint) {
+            this.width = board.width;
+            this.height = board.height;
+            this.layoutSignature = board.getLayoutSignature();
+            this.checkpoint = checkpoint;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return width == other.width && height == other.height &&
+                    layoutSignature == other.layoutSignature && checkpoint == other.checkpoint;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(layoutSignature) * 31 + checkpoint;
+        }
+
+    }
+
+}
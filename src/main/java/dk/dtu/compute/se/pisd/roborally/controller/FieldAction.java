@@ -0,0 +1,53 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.controller;
+
+import dk.dtu.compute.se.pisd.roborally.model.Space;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An action of a space of the board (a board element like a conveyor
+ * belt), which is executed for the player on this space after every
+ * register in the activation phase. The actions of one type are activated
+ * together, in the order given by {@link GameController}.
+ *
+ * Actions do not have any state that could change, so that they can be
+ * shared between boards (e.g. copies of a board). Two actions of the same
+ * type with the same parameters must be equal and have the same hash code,
+ * since the hash code is part of the layout signature of the board (see
+ * {@link dk.dtu.compute.se.pisd.roborally.model.Board#getLayoutSignature()}).
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public abstract class FieldAction {
+
+    /**
+     * Executes the action for the player on the given space.
+     *
+     * @param gameController the game controller of the game
+     * @param space the space with this action and a player on it
+     * @return true if the action changed the game; false otherwise
+     */
+    public abstract boolean doAction(@NotNull GameController gameController, @NotNull Space space);
+
+}
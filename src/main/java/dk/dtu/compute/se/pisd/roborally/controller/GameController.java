@@ -24,6 +24,18 @@ package dk.dtu.compute.se.pisd.roborally.controller;
 import dk.dtu.compute.se.pisd.roborally.model.*;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
 /**
  * ...
  *
@@ -34,81 +46,272 @@ public class GameController {
 
     final public Board board;
 
+    // the cards dealt from the decks; cards do not have any state of their own,
+    // so all cards with the same command can be shared
+    private static final CommandCard[] COMMAND_CARDS = createCommandCards();
+
+    final private Random random;
+
+    final private CommandRegistry registry;
+
+    final private UndoLog undoLog = new UndoLog();
+
+    private boolean recordingUndo = false;
+
+    // the number of commands the owner executes before it gives up its thread,
+    // so that a busy game does not starve other games sharing the same threads
+    private static final int BATCH_SIZE = 32;
+
+    final private Queue<SubmittedCommand<?>> commands = new ConcurrentLinkedQueue<>();
+
+    final private AtomicBoolean executing = new AtomicBoolean(false);
+
+    private volatile Executor owner;
+
+    // the spaces and players visited by activateElements, which are reused
+    private Space[] activatedSpaces = new Space[16];
+
+    private Player[] activatedPlayers = new Player[16];
+
+    final private LaserTable lasers;
+
     public GameController(@NotNull Board board) {
+        this(board, new Random());
+    }
+
+    /**
+     * Creates a game controller for the given board, which uses the given
+     * random number generator for all random decisions of the game (like
+     * dealing the cards). With a seeded generator, a game can be replayed
+     * exactly.
+     *
+     * @param board the board of the game
+     * @param random the random number generator of the game
+     */
+    public GameController(@NotNull Board board, @NotNull Random random) {
+        this(board, random, CommandRegistry.getDefault());
+    }
+
+    /**
+     * Creates a game controller for the given board, which executes the
+     * command cards by the handlers of the given registry.
+     *
+     * @param board the board of the game
+     * @param random the random number generator of the game
+     * @param registry the registry of the handlers of the commands
+     */
+    public GameController(@NotNull Board board, @NotNull Random random, @NotNull CommandRegistry registry) {
         this.board = board;
+        this.random = random;
+        this.registry = registry;
+        this.lasers = new LaserTable(board);
+    }
+
+    private static CommandCard[] createCommandCards() {
+        Command[] commands = Command.values();
+        CommandCard[] cards = new CommandCard[commands.length];
+        for (int i = 0; i < commands.length; i++) {
+            cards[i] = new CommandCard(commands[i]);
+        }
+        return cards;
     }
 
     /**
-     * This is just some dummy controller operation to make a simple move to see something
-     * happening on the board. This method should eventually be deleted!
+     * Sets the owner of this game, which executes the commands submitted to
+     * the game (see {@link #submit(Function)}). The owner executes the
+     * commands one after the other, so that the board is changed by a single
+     * thread at a time only, even when commands are submitted from many
+     * threads concurrently (e.g. by the network, the GUI and bots).
      *
-     * @param space the space to which the current player should move
+     * Without an owner, the commands are executed by the submitting thread;
+     * if another thread is executing commands already, the submitted command
+     * is executed by that thread instead.
+     *
+     * Note that the methods of this controller can still be called directly
+     * (like the GUI does), but only by the thread of the owner.
+     *
+     * @param owner the executor of the commands, e.g. a thread pool or the
+     *              GUI thread; null for executing commands by the submitting thread
      */
-    public void moveCurrentPlayerToSpace(@NotNull Space space)  {
-        // TODO Task1: method should be implemented by the students:
-        //   - the current player should be moved to the given space
-        //     (if it is free())
-        //   - and the current player should be set to the player
-        //     following the current player
-        //   - the counter of moves in the game should be increased by one
-        //     if the player is moved
-        Player currentPlayer = board.getCurrentPlayer();
-        if(space.getPlayer() == null){
-            currentPlayer.setSpace(space);
-            space.setPlayer(currentPlayer);
-            board.setStep(board.getStep() + 1);
+    public void setOwner(Executor owner) {
+        this.owner = owner;
+    }
 
-            int nextPlayerNum;
+    /**
+     * Submits a command to this game, which computes some result from the game.
+     * This method can be called by any thread; the commands are executed by
+     * the owner of the game (see {@link #setOwner(Executor)}) in the order of
+     * their submission.
+     *
+     * @param command the command
+     * @param <T> the type of the result
+     * @return a future of the result of the command
+     */
+    public <T> CompletableFuture<T> submit(@NotNull Function<GameController, T> command) {
+        SubmittedCommand<T> submitted = new SubmittedCommand<>(command);
+        commands.add(submitted);
+        executeCommands();
+        return submitted.future;
+    }
 
-            if(board.getPlayersNumber() != board.getPlayerNumber(currentPlayer) + 1){
-                nextPlayerNum = board.getPlayerNumber(currentPlayer) + 1;
+    /**
+     * Submits a command to this game (see {@link #submit(Function)}), e.g.
+     * {@code execute(GameController::finishProgrammingPhase)}.
+     *
+     * @param command the command
+     * @return a future, which completes when the command is executed
+     */
+    public CompletableFuture<Void> execute(@NotNull Consumer<GameController> command) {
+        return submit(gameController -> {
+            command.accept(gameController);
+            return null;
+        });
+    }
+
+    private void executeCommands() {
+        while (!commands.isEmpty() && executing.compareAndSet(false, true)) {
+            Executor owner = this.owner;
+            if (owner == null) {
+                runCommands(Integer.MAX_VALUE);
             } else {
-                nextPlayerNum = (board.getPlayerNumber(currentPlayer) + 1) - board.getPlayersNumber();
+                try {
+                    owner.execute(() -> {
+                        runCommands(BATCH_SIZE);
+                        executeCommands();
+                    });
+                    return;
+                } catch (RejectedExecutionException e) {
+                    // the owner is shut down; the remaining commands are
+                    // discarded, and their futures fail
+                    SubmittedCommand<?> command;
+                    while ((command = commands.poll()) != null) {
+                        command.future.completeExceptionally(e);
+                    }
+                    executing.set(false);
+                }
             }
+            // a command might have been added after the last poll, but before
+            // executing was reset; in that case, the loop executes it
+        }
+    }
 
-            Player nextPlayer = board.getPlayer(nextPlayerNum);
-            board.setCurrentPlayer(nextPlayer);
+    private void runCommands(int max) {
+        for (int i = 0; i < max; i++) {
+            SubmittedCommand<?> command = commands.poll();
+            if (command == null) {
+                break;
+            }
+            command.run();
         }
+        executing.set(false);
+    }
+
+    /**
+     * This is just some dummy controller operation to make a simple move to see something
+     * happening on the board. This method should eventually be deleted!
+     *
+     * @param space the space to which the current player should move
+     */
+    public void moveCurrentPlayerToSpace(@NotNull Space space)  {
+        board.beginUpdate();
+        try {
+            // TODO Task1: method should be implemented by the students:
+            //   - the current player should be moved to the given space
+            //     (if it is free())
+            //   - and the current player should be set to the player
+            //     following the current player
+            //   - the counter of moves in the game should be increased by one
+            //     if the player is moved
+            Player currentPlayer = board.getCurrentPlayer();
+            if(!board.isOccupied(space.x, space.y)){
+                setPlayerSpace(currentPlayer, space);
+                setStep(board.getStep() + 1);
+
+                int nextPlayerNum;
+
+                if(board.getPlayersNumber() != board.getPlayerNumber(currentPlayer) + 1){
+                    nextPlayerNum = board.getPlayerNumber(currentPlayer) + 1;
+                } else {
+                    nextPlayerNum = (board.getPlayerNumber(currentPlayer) + 1) - board.getPlayersNumber();
+                }
 
+                Player nextPlayer = board.getPlayer(nextPlayerNum);
+                setCurrentPlayer(nextPlayer);
+            }
+        } finally {
+            board.endUpdate();
+        }
     }
 
     // XXX: implemented in the current version
     public void startProgrammingPhase() {
-        board.setPhase(Phase.PROGRAMMING);
-        board.setCurrentPlayer(board.getPlayer(0));
-        board.setStep(0);
+        board.beginUpdate();
+        try {
+            setPhase(Phase.PROGRAMMING);
+            setCurrentPlayer(board.getPlayer(0));
+            setStep(0);
 
-        for (int i = 0; i < board.getPlayersNumber(); i++) {
-            Player player = board.getPlayer(i);
-            if (player != null) {
-                for (int j = 0; j < Player.NO_REGISTERS; j++) {
-                    CommandCardField field = player.getProgramField(j);
-                    field.setCard(null);
-                    field.setVisible(true);
-                }
-                for (int j = 0; j < Player.NO_CARDS; j++) {
-                    CommandCardField field = player.getCardField(j);
-                    field.setCard(generateRandomCommandCard());
-                    field.setVisible(true);
+            for (int i = 0; i < board.getPlayersNumber(); i++) {
+                Player player = board.getPlayer(i);
+                if (player != null) {
+                    // the cards of the last round go to the discard pile,
+                    // and the new cards are dealt from the player's deck
+                    CommandDeck deck = player.getDeck();
+                    saveDeck(deck);
+                    for (int j = 0; j < Player.NO_REGISTERS; j++) {
+                        CommandCardField field = player.getProgramField(j);
+                        discard(deck, field);
+                        setVisible(field, true);
+                    }
+                    for (int j = 0; j < Player.NO_CARDS; j++) {
+                        CommandCardField field = player.getCardField(j);
+                        discard(deck, field);
+                    }
+                    for (int j = 0; j < Player.NO_CARDS; j++) {
+                        CommandCardField field = player.getCardField(j);
+                        int command = deck.draw(random);
+                        setCard(field, command >= 0 ? COMMAND_CARDS[command] : null);
+                        setVisible(field, true);
+                    }
                 }
             }
+        } finally {
+            board.endUpdate();
         }
     }
 
-    // XXX: implemented in the current version
-    private CommandCard generateRandomCommandCard() {
-        Command[] commands = Command.values();
-        int random = (int) (Math.random() * commands.length);
-        return new CommandCard(commands[random]);
+    private void discard(@NotNull CommandDeck deck, @NotNull CommandCardField field) {
+        CommandCard card = field.getCard();
+        if (card != null) {
+            deck.discard(card.command.ordinal());
+            setCard(field, null);
+        }
     }
 
     // XXX: implemented in the current version
     public void finishProgrammingPhase() {
-        makeProgramFieldsInvisible();
-        makeProgramFieldsVisible(0);
-        board.setPhase(Phase.ACTIVATION);
-        board.setCurrentPlayer(board.getPlayer(0));
-        board.setStep(0);
+        board.beginUpdate();
+        try {
+            makeProgramFieldsInvisible();
+            makeProgramFieldsVisible(0);
+            setPhase(Phase.ACTIVATION);
+            setStep(0);
+            startRegister();
+        } finally {
+            board.endUpdate();
+        }
+    }
+
+    /**
+     * Fixes the order in which the players are activated in the register
+     * that starts now, which is their current priority order (see
+     * {@link Board#getPriorityOrder()}), and makes the first of them the
+     * current player.
+     */
+    private void startRegister() {
+        int[] order = board.getPriorityOrder();
+        setActivationOrder(order);
+        setCurrentPlayer(order.length > 0 ? board.getPlayer(order[0]) : null);
     }
 
     // XXX: implemented in the current version
@@ -117,7 +320,7 @@ public class GameController {
             for (int i = 0; i < board.getPlayersNumber(); i++) {
                 Player player = board.getPlayer(i);
                 CommandCardField field = player.getProgramField(register);
-                field.setVisible(true);
+                setVisible(field, true);
             }
         }
     }
@@ -128,21 +331,31 @@ public class GameController {
             Player player = board.getPlayer(i);
             for (int j = 0; j < Player.NO_REGISTERS; j++) {
                 CommandCardField field = player.getProgramField(j);
-                field.setVisible(false);
+                setVisible(field, false);
             }
         }
     }
 
     // XXX: implemented in the current version
     public void executePrograms() {
-        board.setStepMode(false);
-        continuePrograms();
+        board.beginUpdate();
+        try {
+            board.setStepMode(false);
+            continuePrograms();
+        } finally {
+            board.endUpdate();
+        }
     }
 
     // XXX: implemented in the current version
     public void executeStep() {
-        board.setStepMode(true);
-        continuePrograms();
+        board.beginUpdate();
+        try {
+            board.setStepMode(true);
+            continuePrograms();
+        } finally {
+            board.endUpdate();
+        }
     }
 
     // XXX: implemented in the current version
@@ -154,6 +367,9 @@ public class GameController {
 
     // XXX: implemented in the current version
     private void executeNextStep() {
+        if (recordingUndo) {
+            undoLog.mark();
+        }
         Player currentPlayer = board.getCurrentPlayer();
         if (board.getPhase() == Phase.ACTIVATION && currentPlayer != null) {
             int step = board.getStep();
@@ -161,21 +377,17 @@ public class GameController {
                 CommandCard card = currentPlayer.getProgramField(step).getCard();
                 if (card != null) {
                     Command command = card.command;
-                    executeCommand(currentPlayer, command);
-                }
-                int nextPlayerNumber = board.getPlayerNumber(currentPlayer) + 1;
-                if (nextPlayerNumber < board.getPlayersNumber()) {
-                    board.setCurrentPlayer(board.getPlayer(nextPlayerNumber));
-                } else {
-                    step++;
-                    if (step < Player.NO_REGISTERS) {
-                        makeProgramFieldsVisible(step);
-                        board.setStep(step);
-                        board.setCurrentPlayer(board.getPlayer(0));
-                    } else {
-                        startProgrammingPhase();
+                    if (command.isInteractive()) {
+                        // the execution is suspended until the player chose an
+                        // option; the register, the current player and its card
+                        // are the continuation of the round, which is resumed by
+                        // executeCommandOptionAndContinue
+                        setPhase(Phase.PLAYER_INTERACTION);
+                        return;
                     }
+                    executeCommand(currentPlayer, command);
                 }
+                activateNextPlayer(currentPlayer, step);
             } else {
                 // this should not happen
                 assert false;
@@ -186,64 +398,398 @@ public class GameController {
         }
     }
 
-    // XXX: implemented in the current version
+    private void activateNextPlayer(@NotNull Player currentPlayer, int step) {
+        Player nextPlayer = board.getNextActivatedPlayer(currentPlayer);
+        if (nextPlayer != null) {
+            setCurrentPlayer(nextPlayer);
+        } else {
+            activateElements();
+            step++;
+            if (step < Player.NO_REGISTERS) {
+                makeProgramFieldsVisible(step);
+                setStep(step);
+                startRegister();
+            } else {
+                startProgrammingPhase();
+            }
+        }
+    }
+
+    /**
+     * Executes the option chosen by the current player for the interactive
+     * command card in its current register, and resumes the execution of
+     * the programs where it was suspended (see {@link Board#getPendingOptions()}).
+     * In step mode, only the current step is finished; otherwise, the
+     * programs are executed until the next interactive card or the end of
+     * the round. The calling thread never waits for the choice; the round
+     * is suspended simply by returning in the {@link Phase#PLAYER_INTERACTION}
+     * phase.
+     *
+     * @param option the chosen option
+     * @return true if the option was executed; false if no choice is pending
+     *         or the option is not an option of the pending choice
+     */
+    public boolean executeCommandOptionAndContinue(@NotNull Command option) {
+        board.beginUpdate();
+        try {
+            Player currentPlayer = board.getCurrentPlayer();
+            if (!board.getPendingOptions().contains(option)) {
+                return false;
+            }
+            setPhase(Phase.ACTIVATION);
+            executeCommand(currentPlayer, option);
+            activateNextPlayer(currentPlayer, board.getStep());
+            if (board.getPhase() == Phase.ACTIVATION && !board.isStepMode()) {
+                continuePrograms();
+            }
+            return true;
+        } finally {
+            board.endUpdate();
+        }
+    }
+
     private void executeCommand(@NotNull Player player, Command command) {
-        if (player != null && player.board == board && command != null) {
-            // XXX This is a very simplistic way of dealing with some basic cards and
-            //     their execution. This should eventually be done in a more elegant way
-            //     (this concerns the way cards are modelled as well as the way they are executed).
-
-            switch (command) {
-                case FORWARD:
-                    this.moveForward(player);
-                    break;
-                case RIGHT:
-                    this.turnRight(player);
-                    break;
-                case LEFT:
-                    this.turnLeft(player);
-                    break;
-                case FAST_FORWARD:
-                    this.fastForward(player);
-                    break;
-                default:
-                    // DO NOTHING (for now)
+        if (player.board == board && command != null) {
+            registry.execute(this, player, command);
+        }
+    }
+
+    /**
+     * Activates the actions of the board (see {@link FieldAction}) after a
+     * register was executed by all players. The actions are activated by
+     * type in a fixed order; for every type, only the spaces with an action
+     * of that type are visited (see {@link Board#getElementSpaces(Class)}).
+     */
+    private void activateElements() {
+        activateElements(ConveyorBelt.class);
+        activateElements(PushPanel.class);
+        activateElements(Gear.class);
+        fireLasers();
+        activateElements(CheckPoint.class);
+    }
+
+    /**
+     * Fires all lasers: first the lasers of the board (see {@link BoardLaser}),
+     * then the laser of every robot, which fires in the heading of the robot.
+     * Every player hit by a laser gets one damage.
+     */
+    private void fireLasers() {
+        for (Space space: board.getElementSpaces(BoardLaser.class)) {
+            for (FieldAction action: space.getActions()) {
+                if (action instanceof BoardLaser) {
+                    action.doAction(this, space);
+                }
+            }
+        }
+        for (int i = 0; i < board.getPlayersNumber(); i++) {
+            Player player = board.getPlayer(i);
+            if (player.getSpace() != null) {
+                Player target = lasers.getTarget(player.getSpace(), player.getHeading());
+                if (target != null) {
+                    damage(target, 1);
+                }
+            }
+        }
+    }
+
+    public LaserTable getLaserTable() {
+        return lasers;
+    }
+
+    /**
+     * Adds the given damage to the damage of the player.
+     *
+     * @param player the player
+     * @param damage the additional damage
+     */
+    public void damage(@NotNull Player player, int damage) {
+        board.beginUpdate();
+        try {
+            if (player.board == board && damage > 0) {
+                setDamage(player, player.getDamage() + damage);
+            }
+        } finally {
+            board.endUpdate();
+        }
+    }
+
+    private void activateElements(@NotNull Class<? extends FieldAction> type) {
+        List<Space> spaces = board.getElementSpaces(type);
+        // the players on the elements are determined first, so that a player
+        // moved onto another element of the same type is not moved again
+        int n = 0;
+        for (Space space: spaces) {
+            Player player = space.getPlayer();
+            if (player != null) {
+                if (n == activatedSpaces.length) {
+                    activatedSpaces = Arrays.copyOf(activatedSpaces, 2 * n);
+                    activatedPlayers = Arrays.copyOf(activatedPlayers, 2 * n);
+                }
+                activatedSpaces[n] = space;
+                activatedPlayers[n] = player;
+                n++;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            Space space = activatedSpaces[i];
+            if (space.getPlayer() == activatedPlayers[i]) {
+                for (FieldAction action: space.getActions()) {
+                    if (action.getClass() == type) {
+                        action.doAction(this, space);
+                    }
+                }
             }
+            activatedSpaces[i] = null;
+            activatedPlayers[i] = null;
         }
     }
 
-    // TODO Task2
     public void moveForward(@NotNull Player player) {
+        moveToNeighbour(player, player.getHeading());
+    }
 
+    /**
+     * Moves the player by one space in the given heading, if the target
+     * space is free and not blocked by a wall. The heading of the player
+     * does not change.
+     *
+     * @param player the player
+     * @param heading the heading of the move
+     * @return true if the player was moved; false otherwise
+     */
+    public boolean moveToNeighbour(@NotNull Player player, @NotNull Heading heading) {
+        board.beginUpdate();
+        try {
+            if (player.board == board && player.getSpace() != null) {
+                Space target = board.getNeighbour(player.getSpace(), heading);
+                if (target != null && !board.isOccupied(target.x, target.y)) {
+                    setPlayerSpace(player, target);
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            board.endUpdate();
+        }
     }
 
-    // TODO Task2
-    public void fastForward(@NotNull Player player) {
+    /**
+     * Lets the player reach the checkpoint with the given number, if this
+     * is the next checkpoint the player must reach.
+     *
+     * @param player the player
+     * @param checkpoint the number of the checkpoint
+     * @return true if the player reached the checkpoint; false otherwise
+     */
+    public boolean reachCheckpoint(@NotNull Player player, int checkpoint) {
+        board.beginUpdate();
+        try {
+            if (player.board == board && player.getLastCheckpoint() == checkpoint - 1) {
+                setLastCheckpoint(player, checkpoint);
+                return true;
+            }
+            return false;
+        } finally {
+            board.endUpdate();
+        }
+    }
 
+    public void fastForward(@NotNull Player player) {
+        board.beginUpdate();
+        try {
+            moveForward(player);
+            moveForward(player);
+        } finally {
+            board.endUpdate();
+        }
     }
 
-    // TODO Task2
     public void turnRight(@NotNull Player player) {
-
+        board.beginUpdate();
+        try {
+            if (player.board == board) {
+                setPlayerHeading(player, player.getHeading().next());
+            }
+        } finally {
+            board.endUpdate();
+        }
     }
 
-    // TODO Task2
     public void turnLeft(@NotNull Player player) {
-
+        board.beginUpdate();
+        try {
+            if (player.board == board) {
+                setPlayerHeading(player, player.getHeading().prev());
+            }
+        } finally {
+            board.endUpdate();
+        }
     }
 
     public boolean moveCards(@NotNull CommandCardField source, @NotNull CommandCardField target) {
-        CommandCard sourceCard = source.getCard();
-        CommandCard targetCard = target.getCard();
-        if (sourceCard != null && targetCard == null) {
-            target.setCard(sourceCard);
-            source.setCard(null);
-            return true;
-        } else {
-            return false;
+        board.beginUpdate();
+        try {
+            CommandCard sourceCard = source.getCard();
+            CommandCard targetCard = target.getCard();
+            if (sourceCard != null && targetCard == null) {
+                setCard(target, sourceCard);
+                setCard(source, null);
+                return true;
+            } else {
+                return false;
+            }
+        } finally {
+            board.endUpdate();
+        }
+    }
+
+    public boolean isRecordingUndo() {
+        return recordingUndo;
+    }
+
+    /**
+     * Switches the recording of the undo log on or off. While recording,
+     * every change this controller makes to the board is logged with its
+     * old value, so that executed steps can be reverted again by
+     * {@link #undoStep(boolean)} or {@link #undoTo(int, boolean)} without
+     * copying the board. Switching recording off discards the log.
+     *
+     * @param recordingUndo true if changes should be recorded
+     */
+    public void setRecordingUndo(boolean recordingUndo) {
+        this.recordingUndo = recordingUndo;
+        if (!recordingUndo) {
+            undoLog.clear();
+        }
+    }
+
+    /**
+     * Returns the current position of the undo log, which can later be
+     * used for reverting all changes made after this point by
+     * {@link #undoTo(int, boolean)}.
+     *
+     * @return the current position of the undo log
+     */
+    public int getUndoMark() {
+        return undoLog.size();
+    }
+
+    /**
+     * Reverts all changes recorded after the given mark of the undo log.
+     *
+     * @param mark a position of the undo log obtained by {@link #getUndoMark()}
+     * @param notify whether the views should be notified of the reverted changes
+     */
+    public void undoTo(int mark, boolean notify) {
+        board.beginUpdate();
+        boolean suppressed = board.isNotificationsSuppressed();
+        try {
+            board.setNotificationsSuppressed(suppressed || !notify);
+            undoLog.undoTo(mark);
+        } finally {
+            board.setNotificationsSuppressed(suppressed);
+            board.endUpdate();
         }
     }
 
+    /**
+     * Reverts the last step executed while recording the undo log. The cost
+     * is proportional to the number of changes made by that step only.
+     *
+     * @param notify whether the views should be notified of the reverted changes
+     * @return true if a step was reverted; false if there was no recorded step
+     */
+    public boolean undoStep(boolean notify) {
+        board.beginUpdate();
+        boolean suppressed = board.isNotificationsSuppressed();
+        try {
+            board.setNotificationsSuppressed(suppressed || !notify);
+            return undoLog.undoToLastMark();
+        } finally {
+            board.setNotificationsSuppressed(suppressed);
+            board.endUpdate();
+        }
+    }
+
+    // The following methods are the only places where this controller changes
+    // the state of the board; they record the old values in the undo log first.
+
+    private void setPlayerSpace(@NotNull Player player, Space space) {
+        if (recordingUndo && player.getSpace() != space) {
+            undoLog.playerSpace(player, player.getSpace());
+        }
+        player.setSpace(space);
+    }
+
+    private void setPlayerHeading(@NotNull Player player, @NotNull Heading heading) {
+        if (recordingUndo && player.getHeading() != heading) {
+            undoLog.playerHeading(player, player.getHeading());
+        }
+        player.setHeading(heading);
+    }
+
+    private void setLastCheckpoint(@NotNull Player player, int checkpoint) {
+        if (recordingUndo && player.getLastCheckpoint() != checkpoint) {
+            undoLog.playerCheckpoint(player, player.getLastCheckpoint());
+        }
+        player.setLastCheckpoint(checkpoint);
+    }
+
+    private void setActivationOrder(int[] order) {
+        if (recordingUndo && !Arrays.equals(board.getActivationOrder(), order)) {
+            undoLog.activationOrder(board, board.getActivationOrder());
+        }
+        board.setActivationOrder(order);
+    }
+
+    private void setDamage(@NotNull Player player, int damage) {
+        if (recordingUndo && player.getDamage() != damage) {
+            undoLog.playerDamage(player, player.getDamage());
+        }
+        player.setDamage(damage);
+    }
+
+    private void setCard(@NotNull CommandCardField field, CommandCard card) {
+        if (recordingUndo && field.getCard() != card) {
+            undoLog.fieldCard(field, field.getCard());
+        }
+        field.setCard(card);
+    }
+
+    private void setVisible(@NotNull CommandCardField field, boolean visible) {
+        if (recordingUndo && field.isVisible() != visible) {
+            undoLog.fieldVisible(field, field.isVisible());
+        }
+        field.setVisible(visible);
+    }
+
+    private void saveDeck(@NotNull CommandDeck deck) {
+        if (recordingUndo) {
+            undoLog.deck(deck, deck.copy());
+        }
+    }
+
+    private void setPhase(@NotNull Phase phase) {
+        if (recordingUndo && board.getPhase() != phase) {
+            undoLog.phase(board, board.getPhase());
+        }
+        board.setPhase(phase);
+    }
+
+    private void setStep(int step) {
+        if (recordingUndo && board.getStep() != step) {
+            undoLog.step(board, board.getStep());
+        }
+        board.setStep(step);
+    }
+
+    private void setCurrentPlayer(Player player) {
+        if (recordingUndo && board.getCurrentPlayer() != player) {
+            undoLog.currentPlayer(board, board.getCurrentPlayer());
+        }
+        board.setCurrentPlayer(player);
+    }
+
     /**
      * A method called when no corresponding controller operation is implemented yet. This
      * should eventually be removed.
@@ -253,4 +799,28 @@ public class GameController {
         assert false;
     }
 
+    /**
+     * A command submitted to this game together with the future of its result.
+     */
+    private final class SubmittedCommand<T> implements Runnable {
+
+        final Function<GameController, T> command;
+
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        SubmittedCommand(@NotNull Function<GameController, T> command) {
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            try {
+                future.complete(command.apply(GameController.this));
+            } catch (RuntimeException | Error e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+    }
+
 }
@@ -0,0 +1,170 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.controller;
+
+import dk.dtu.compute.se.pisd.roborally.model.Board;
+import dk.dtu.compute.se.pisd.roborally.model.Heading;
+import dk.dtu.compute.se.pisd.roborally.model.Player;
+import dk.dtu.compute.se.pisd.roborally.model.Space;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Computes the targets of lasers, i.e. the first player along the line of
+ * sight from a space in some heading (until the ray is blocked by a wall).
+ * The targets are cached per row (for east and west) and per column (for
+ * south and north); the cache of a row is valid as long as no player enters
+ * or leaves the row (see {@link Board#getRowVersion(int)}), so that a move
+ * of a player invalidates only the rays along the rows and columns it
+ * actually left or entered. When a ray is computed, the result is cached
+ * for all the spaces the ray passes, since rays from these spaces in the
+ * same heading hit the same target.
+ *
+ * The first player along a ray is found by the occupancy of the board (see
+ * {@link Board#getFirstOccupied(Space, Heading)}), so that only the walls
+ * up to this player need to be checked.
+ *
+ * The caches of rows and columns are allocated when a ray in the row or
+ * column is computed for the first time. A laser table must be used by the
+ * thread that changes the board only.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public class LaserTable {
+
+    private static final int UNKNOWN = -2;
+
+    private static final int NONE = -1;
+
+    final private Board board;
+
+    private long layoutSignature;
+
+    // for row y, the targets of the rays from (x, y) to the east at index 2x
+    // and to the west at index 2x+1, as numbers of players; for column x,
+    // the same for the rays to the south and north
+    final private int[][] rowTargets;
+    final private int[] rowVersions;
+    final private int[][] columnTargets;
+    final private int[] columnVersions;
+
+    public LaserTable(@NotNull Board board) {
+        this.board = board;
+        this.layoutSignature = board.getLayoutSignature();
+        rowTargets = new int[board.height][];
+        rowVersions = new int[board.height];
+        columnTargets = new int[board.width][];
+        columnVersions = new int[board.width];
+    }
+
+    /**
+     * Returns the first player hit by a ray from the given space in the
+     * given heading; a player on the space itself is not hit. The ray is
+     * blocked by walls, and it ends at the latest after it went once
+     * around the board (recall that the board wraps around at its edges).
+     *
+     * @param from the space from which the ray starts
+     * @param heading the heading of the ray
+     * @return the player hit by the ray, or null if the ray does not hit any player
+     */
+    public Player getTarget(@NotNull Space from, @NotNull Heading heading) {
+        if (board.getLayoutSignature() != layoutSignature) {
+            layoutSignature = board.getLayoutSignature();
+            Arrays.fill(rowTargets, null);
+            Arrays.fill(columnTargets, null);
+        }
+        int[] targets = targets(from, heading);
+        int index = index(from, heading);
+        if (targets[index] == UNKNOWN) {
+            Space occupied = board.getFirstOccupied(from, heading);
+            if (occupied == null) {
+                // no player in the row (column), so no ray in this heading hits
+                for (int i = index & 1; i < targets.length; i += 2) {
+                    targets[i] = NONE;
+                }
+            } else if (occupied == from) {
+                targets[index] = NONE;
+            } else {
+                // only the walls up to the first player need to be checked
+                Space space = from;
+                int steps = 0;
+                do {
+                    space = board.getNeighbour(space, heading);
+                    steps++;
+                } while (space != null && space != occupied);
+                int target = space != null ? board.getPlayerNumber(space.getPlayer()) : NONE;
+                // the ray ended at a wall or a player, so the rays from all
+                // the spaces it passed end there too
+                space = from;
+                for (int i = 0; i < steps; i++) {
+                    targets[index(space, heading)] = target;
+                    space = board.getNeighbour(space, heading);
+                }
+            }
+        }
+        return targets[index] == NONE ? null : board.getPlayer(targets[index]);
+    }
+
+    private int[] targets(@NotNull Space space, @NotNull Heading heading) {
+        if (heading == Heading.EAST || heading == Heading.WEST) {
+            int version = board.getRowVersion(space.y);
+            int[] targets = rowTargets[space.y];
+            if (targets == null) {
+                targets = new int[2 * board.width];
+                rowTargets[space.y] = targets;
+                Arrays.fill(targets, UNKNOWN);
+            } else if (rowVersions[space.y] != version) {
+                Arrays.fill(targets, UNKNOWN);
+            }
+            rowVersions[space.y] = version;
+            return targets;
+        } else {
+            int version = board.getColumnVersion(space.x);
+            int[] targets = columnTargets[space.x];
+            if (targets == null) {
+                targets = new int[2 * board.height];
+                columnTargets[space.x] = targets;
+                Arrays.fill(targets, UNKNOWN);
+            } else if (columnVersions[space.x] != version) {
+                Arrays.fill(targets, UNKNOWN);
+            }
+            columnVersions[space.x] = version;
+            return targets;
+        }
+    }
+
+    private static int index(@NotNull Space space, @NotNull Heading heading) {
+        switch (heading) {
+            case EAST:
+                return 2 * space.x;
+            case WEST:
+                return 2 * space.x + 1;
+            case SOUTH:
+                return 2 * space.y;
+            default:
+                return 2 * space.y + 1;
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.controller;
+
+import dk.dtu.compute.se.pisd.roborally.model.Space;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The priority antenna of a board, which determines the order in which the
+ * players are activated in each register: players closer to the antenna
+ * go first (see {@link dk.dtu.compute.se.pisd.roborally.model.Board#getPriorityOrder()}).
+ * The antenna itself does not do anything when it is activated.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public class PriorityAntenna extends FieldAction {
+
+    @Override
+    public boolean doAction(@NotNull GameController gameController, @NotNull Space space) {
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PriorityAntenna;
+    }
+
+    @Override
+    public int hashCode() {
+        return 0;
+    }
+
+}
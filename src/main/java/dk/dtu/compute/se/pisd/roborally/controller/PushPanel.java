@@ -0,0 +1,91 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.controller;
+
+import dk.dtu.compute.se.pisd.roborally.model.Heading;
+import dk.dtu.compute.se.pisd.roborally.model.Player;
+import dk.dtu.compute.se.pisd.roborally.model.Space;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A push panel, which pushes the player on its space by one space in the
+ * heading of the panel, but only after some of the registers.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public class PushPanel extends FieldAction {
+
+    final private Heading heading;
+
+    // bit i is set if the panel is active after register i
+    final private int registers;
+
+    /**
+     * Creates a push panel.
+     *
+     * @param heading the heading in which the panel pushes players
+     * @param registers the numbers of the registers (starting at 0)
+     *                  after which the panel is active
+     */
+    public PushPanel(@NotNull Heading heading, int... registers) {
+        this.heading = heading;
+        int mask = 0;
+        for (int register: registers) {
+            mask |= 1 << register;
+        }
+        this.registers = mask;
+    }
+
+    public Heading getHeading() {
+        return heading;
+    }
+
+    public boolean isActive(int register) {
+        return register >= 0 && register < 32 && (registers & (1 << register)) != 0;
+    }
+
+    /**
+     * @return the registers after which the panel is active as a bit set
+     */
+    public int getRegisters() {
+        return registers;
+    }
+
+    @Override
+    public boolean doAction(@NotNull GameController gameController, @NotNull Space space) {
+        Player player = space.getPlayer();
+        return player != null && isActive(gameController.board.getStep()) &&
+                gameController.moveToNeighbour(player, heading);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PushPanel && ((PushPanel) o).heading == heading && ((PushPanel) o).registers == registers;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * registers + heading.ordinal();
+    }
+
+}
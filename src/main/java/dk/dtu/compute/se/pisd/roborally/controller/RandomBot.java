@@ -0,0 +1,59 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.controller;
+
+import dk.dtu.compute.se.pisd.roborally.model.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Random;
+
+/**
+ * A bot which programs its registers with cards chosen at random.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public class RandomBot implements BotStrategy {
+
+    @Override
+    public void program(@NotNull GameController gameController, @NotNull Player player, @NotNull Random random) {
+        int[] cards = new int[Player.NO_CARDS];
+        for (int i = 0; i < cards.length; i++) {
+            cards[i] = i;
+        }
+        int register = 0;
+        for (int n = cards.length; n > 0 && register < Player.NO_REGISTERS; n--) {
+            int j = random.nextInt(n);
+            int card = cards[j];
+            cards[j] = cards[n - 1];
+            if (gameController.moveCards(player.getCardField(card), player.getProgramField(register))) {
+                register++;
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "random";
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.controller;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The statistics of a tournament played by a {@link TournamentRunner}.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public class TournamentResult {
+
+    final private List<String> strategies;
+
+    final public long games;
+
+    final public long draws;
+
+    final public long rounds;
+
+    final public long elapsedNanos;
+
+    final private long[] played;
+
+    final private long[] wins;
+
+    final private long[] winningRounds;
+
+    TournamentResult(List<String> strategies, long games, long draws, long rounds,
+                     long[] played, long[] wins, long[] winningRounds, long elapsedNanos) {
+        this.strategies = Collections.unmodifiableList(strategies);
+        this.games = games;
+        this.draws = draws;
+        this.rounds = rounds;
+        this.played = played;
+        this.wins = wins;
+        this.winningRounds = winningRounds;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public List<String> getStrategies() {
+        return strategies;
+    }
+
+    /**
+     * @param strategy the number of the strategy
+     * @return the number of players in all games, which used this strategy
+     */
+    public long getPlayed(int strategy) {
+        return played[strategy];
+    }
+
+    public long getWins(int strategy) {
+        return wins[strategy];
+    }
+
+    /**
+     * @param strategy the number of the strategy
+     * @return the ratio of the players with this strategy, which won their game
+     */
+    public double getWinRate(int strategy) {
+        return played[strategy] == 0 ? 0.0 : (double) wins[strategy] / played[strategy];
+    }
+
+    /**
+     * @param strategy the number of the strategy
+     * @return the average number of rounds of the games won by this strategy
+     */
+    public double getAverageRoundsToWin(int strategy) {
+        return wins[strategy] == 0 ? 0.0 : (double) winningRounds[strategy] / wins[strategy];
+    }
+
+    public double getAverageRounds() {
+        return games == 0 ? 0.0 : (double) rounds / games;
+    }
+
+    public double getGamesPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : games * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append(String.format("%d games (%d draws) in %.3f s: %.1f games/s, %.2f rounds/game%n",
+                games, draws, elapsedNanos / 1e9, getGamesPerSecond(), getAverageRounds()));
+        for (int i = 0; i < strategies.size(); i++) {
+            result.append(String.format("  %-12s %8d wins, win rate %.3f, %.2f rounds to win%n",
+                    strategies.get(i), wins[i], getWinRate(i), getAverageRoundsToWin(i)));
+        }
+        return result.toString();
+    }
+
+}
@@ -0,0 +1,245 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.controller;
+
+import dk.dtu.compute.se.pisd.roborally.model.Board;
+import dk.dtu.compute.se.pisd.roborally.model.Command;
+import dk.dtu.compute.se.pisd.roborally.model.Phase;
+import dk.dtu.compute.se.pisd.roborally.model.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Plays many complete games between bots (see {@link BotStrategy}) for
+ * comparing the strategies or for balancing the cards. The games are
+ * independent of each other and are distributed over the threads of a
+ * fork/join pool; every game has its own board, game controller and
+ * random number generator. The results are collected in striped counters
+ * ({@link LongAdder}), so that the threads do not contend when a game ends.
+ *
+ * In every game, the strategies are assigned to the players round robin,
+ * starting with a different strategy in every game, so that no strategy
+ * gets an advantage from always being the first player.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public class TournamentRunner {
+
+    /**
+     * Creates the board for a game of the tournament, with all players
+     * added and placed on their start spaces.
+     */
+    public interface BoardFactory {
+
+        Board createBoard(int game);
+
+    }
+
+    /**
+     * Decides whether a game is won. It is checked after every round.
+     */
+    public interface WinCondition {
+
+        /**
+         * @param board the board of the game
+         * @return the winner of the game; null if the game is not won yet
+         */
+        Player getWinner(@NotNull Board board);
+
+    }
+
+    // the number of games a task plays itself instead of splitting them further
+    private static final int BATCH_SIZE = 16;
+
+    final private ForkJoinPool pool;
+
+    final private BoardFactory boardFactory;
+
+    final private List<BotStrategy> strategies;
+
+    final private WinCondition winCondition;
+
+    final private int maxRounds;
+
+    public TournamentRunner(@NotNull BoardFactory boardFactory, @NotNull List<BotStrategy> strategies,
+                            @NotNull WinCondition winCondition, int maxRounds) {
+        this(ForkJoinPool.commonPool(), boardFactory, strategies, winCondition, maxRounds);
+    }
+
+    public TournamentRunner(@NotNull ForkJoinPool pool, @NotNull BoardFactory boardFactory,
+                            @NotNull List<BotStrategy> strategies, @NotNull WinCondition winCondition, int maxRounds) {
+        if (strategies.isEmpty()) {
+            throw new IllegalArgumentException("A tournament needs at least one strategy!");
+        }
+        this.pool = pool;
+        this.boardFactory = boardFactory;
+        this.strategies = new ArrayList<>(strategies);
+        this.winCondition = winCondition;
+        this.maxRounds = maxRounds;
+    }
+
+    /**
+     * Plays the given number of games and returns the statistics. The games
+     * are determined by the seed (and the strategies), so that running the
+     * same tournament with the same seed gives the same results.
+     *
+     * @param games the number of games to play
+     * @param seed the seed for the random number generators of the games
+     * @return the statistics of the tournament
+     */
+    public TournamentResult run(int games, long seed) {
+        Statistics statistics = new Statistics(strategies.size());
+        long start = System.nanoTime();
+        pool.invoke(new Games(statistics, seed, 0, games));
+        long elapsed = System.nanoTime() - start;
+        return statistics.result(strategies, elapsed);
+    }
+
+    private void playGame(@NotNull Statistics statistics, long seed, int game) {
+        Random random = new Random(seed + game * 0x9E3779B97F4A7C15L);
+        Board board = boardFactory.createBoard(game);
+        // nobody observes the board, but this saves the notification overhead
+        board.setNotificationsSuppressed(true);
+        GameController gameController = new GameController(board, random);
+
+        int players = board.getPlayersNumber();
+        BotStrategy[] seats = new BotStrategy[players];
+        for (int i = 0; i < players; i++) {
+            int strategy = (i + game) % strategies.size();
+            seats[i] = strategies.get(strategy);
+            statistics.played[strategy].increment();
+        }
+
+        gameController.startProgrammingPhase();
+        Player winner = null;
+        int rounds = 0;
+        while (winner == null && rounds < maxRounds) {
+            for (int i = 0; i < players; i++) {
+                seats[i].program(gameController, board.getPlayer(i), random);
+            }
+            gameController.finishProgrammingPhase();
+            gameController.executePrograms();
+            while (board.getPhase() == Phase.PLAYER_INTERACTION) {
+                Player player = board.getCurrentPlayer();
+                List<Command> options = board.getPendingOptions();
+                Command option = seats[board.getPlayerNumber(player)].choose(gameController, player, options, random);
+                if (!gameController.executeCommandOptionAndContinue(option)) {
+                    // an invalid choice of a bot falls back to the first option
+                    gameController.executeCommandOptionAndContinue(options.get(0));
+                }
+            }
+            rounds++;
+            winner = winCondition.getWinner(board);
+        }
+
+        statistics.games.increment();
+        statistics.rounds.add(rounds);
+        if (winner != null) {
+            int strategy = (board.getPlayerNumber(winner) + game) % strategies.size();
+            statistics.wins[strategy].increment();
+            statistics.winningRounds[strategy].add(rounds);
+        } else {
+            statistics.draws.increment();
+        }
+    }
+
+    private class Games extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        final private Statistics statistics;
+        final private long seed;
+        final private int from;
+        final private int to;
+
+        Games(Statistics statistics, long seed, int from, int to) {
+            this.statistics = statistics;
+            this.seed = seed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_SIZE) {
+                for (int game = from; game < to; game++) {
+                    playGame(statistics, seed, game);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Games(statistics, seed, from, middle),
+                        new Games(statistics, seed, middle, to));
+            }
+        }
+
+    }
+
+    private static class Statistics {
+
+        final LongAdder games = new LongAdder();
+        final LongAdder draws = new LongAdder();
+        final LongAdder rounds = new LongAdder();
+        final LongAdder[] played;
+        final LongAdder[] wins;
+        final LongAdder[] winningRounds;
+
+        Statistics(int strategies) {
+            played = adders(strategies);
+            wins = adders(strategies);
+            winningRounds = adders(strategies);
+        }
+
+        private static LongAdder[] adders(int n) {
+            LongAdder[] adders = new LongAdder[n];
+            for (int i = 0; i < n; i++) {
+                adders[i] = new LongAdder();
+            }
+            return adders;
+        }
+
+        private static long[] sums(LongAdder[] adders) {
+            long[] sums = new long[adders.length];
+            for (int i = 0; i < adders.length; i++) {
+                sums[i] = adders[i].sum();
+            }
+            return sums;
+        }
+
+        TournamentResult result(List<BotStrategy> strategies, long elapsedNanos) {
+            List<String> names = new ArrayList<>();
+            for (BotStrategy strategy: strategies) {
+                names.add(strategy.getName());
+            }
+            return new TournamentResult(names, games.sum(), draws.sum(), rounds.sum(),
+                    sums(played), sums(wins), sums(winningRounds), elapsedNanos);
+        }
+
+    }
+
+}
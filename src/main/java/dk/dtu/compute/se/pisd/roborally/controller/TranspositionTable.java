@@ -0,0 +1,140 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.controller;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A cache for results of evaluating board states, which is keyed by the
+ * hash of the state (see {@link dk.dtu.compute.se.pisd.roborally.model.Board#getHash()}).
+ * The table has a fixed number of slots, so its memory is bounded; a state
+ * is stored in the slot given by the low bits of its hash, and replaces
+ * whatever was stored there before. The full hash is stored along with the
+ * value, so that a lookup never returns the value of another state (except
+ * for the extremely unlikely case of two states with the same hash).
+ *
+ * This class is not thread-safe; every search should use its own table.
+ *
+ * @param <V> the type of the cached values
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public class TranspositionTable<V> {
+
+    private final long[] hashes;
+
+    private final Object[] values;
+
+    private final int mask;
+
+    private int size = 0;
+
+    private long hits = 0;
+
+    private long misses = 0;
+
+    /**
+     * Creates a transposition table with at least the given number of slots
+     * (the number of slots is rounded up to the next power of two).
+     *
+     * @param capacity the minimum number of slots of the table
+     */
+    public TranspositionTable(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity of transposition table must be between 1 and 2^30!");
+        }
+        int slots = Integer.highestOneBit(capacity);
+        if (slots < capacity) {
+            slots = slots << 1;
+        }
+        hashes = new long[slots];
+        values = new Object[slots];
+        mask = slots - 1;
+    }
+
+    /**
+     * Returns the value cached for the state with the given hash.
+     *
+     * @param hash the hash of the state
+     * @return the cached value, or null if there is no value for this state
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long hash) {
+        int slot = slot(hash);
+        Object value = values[slot];
+        if (value != null && hashes[slot] == hash) {
+            hits++;
+            return (V) value;
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Caches the value for the state with the given hash, replacing
+     * any value which was cached in the same slot before.
+     *
+     * @param hash the hash of the state
+     * @param value the value to be cached
+     */
+    public void put(long hash, @NotNull V value) {
+        int slot = slot(hash);
+        if (values[slot] == null) {
+            size++;
+        }
+        hashes[slot] = hash;
+        values[slot] = value;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+        hits = 0;
+        misses = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return values.length;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    private int slot(long hash) {
+        // the hash is well distributed already, but mixing in the high bits
+        // does not hurt in case some lower bits do not vary much
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+}
@@ -0,0 +1,204 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.controller;
+
+import dk.dtu.compute.se.pisd.roborally.model.*;
+
+import java.util.Arrays;
+
+/**
+ * The undo log of a {@link GameController}. For every change the game
+ * controller makes to the board, the log records the minimal information
+ * needed for reverting this change (the changed object and its old value).
+ * The entries are kept in parallel arrays, which are reused when entries
+ * are undone, so that recording a change does not allocate any objects.
+ * The only exception are the decks of the players, which are copied as a
+ * whole before cards are dealt (once per round).
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+class UndoLog {
+
+    private static final int MARK = 0;
+    private static final int SPACE = 1;
+    private static final int HEADING = 2;
+    private static final int CARD = 3;
+    private static final int VISIBLE = 4;
+    private static final int PHASE = 5;
+    private static final int STEP = 6;
+    private static final int CURRENT_PLAYER = 7;
+    private static final int DECK = 8;
+    private static final int CHECKPOINT = 9;
+    private static final int DAMAGE = 10;
+    private static final int ACTIVATION_ORDER = 11;
+
+    private int[] kinds = new int[64];
+    private Object[] targets = new Object[64];
+    private Object[] oldValues = new Object[64];
+    private int[] oldInts = new int[64];
+
+    private int size = 0;
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(targets, 0, size, null);
+        Arrays.fill(oldValues, 0, size, null);
+        size = 0;
+    }
+
+    void mark() {
+        push(MARK, null, null, 0);
+    }
+
+    void playerSpace(Player player, Space oldSpace) {
+        push(SPACE, player, oldSpace, 0);
+    }
+
+    void playerHeading(Player player, Heading oldHeading) {
+        push(HEADING, player, oldHeading, 0);
+    }
+
+    void playerCheckpoint(Player player, int oldCheckpoint) {
+        push(CHECKPOINT, player, null, oldCheckpoint);
+    }
+
+    void playerDamage(Player player, int oldDamage) {
+        push(DAMAGE, player, null, oldDamage);
+    }
+
+    void fieldCard(CommandCardField field, CommandCard oldCard) {
+        push(CARD, field, oldCard, 0);
+    }
+
+    void fieldVisible(CommandCardField field, boolean oldVisible) {
+        push(VISIBLE, field, null, oldVisible ? 1 : 0);
+    }
+
+    void phase(Board board, Phase oldPhase) {
+        push(PHASE, board, oldPhase, 0);
+    }
+
+    void step(Board board, int oldStep) {
+        push(STEP, board, null, oldStep);
+    }
+
+    void currentPlayer(Board board, Player oldPlayer) {
+        push(CURRENT_PLAYER, board, oldPlayer, 0);
+    }
+
+    void deck(CommandDeck deck, CommandDeck oldDeck) {
+        push(DECK, deck, oldDeck, 0);
+    }
+
+    void activationOrder(Board board, int[] oldActivationOrder) {
+        push(ACTIVATION_ORDER, board, oldActivationOrder, 0);
+    }
+
+    /**
+     * Reverts all changes recorded after the last mark and removes this mark.
+     *
+     * @return true if there was a mark to revert to; false otherwise
+     */
+    boolean undoToLastMark() {
+        int i = size - 1;
+        while (i >= 0 && kinds[i] != MARK) {
+            i--;
+        }
+        if (i < 0) {
+            return false;
+        }
+        undoTo(i);
+        return true;
+    }
+
+    /**
+     * Reverts all changes recorded at or after the given position of the log.
+     *
+     * @param position a position of the log as obtained by {@link #size()}
+     */
+    void undoTo(int position) {
+        while (size > position) {
+            size--;
+            Object target = targets[size];
+            Object oldValue = oldValues[size];
+            switch (kinds[size]) {
+                case SPACE:
+                    ((Player) target).setSpace((Space) oldValue);
+                    break;
+                case HEADING:
+                    ((Player) target).setHeading((Heading) oldValue);
+                    break;
+                case CARD:
+                    ((CommandCardField) target).setCard((CommandCard) oldValue);
+                    break;
+                case VISIBLE:
+                    ((CommandCardField) target).setVisible(oldInts[size] != 0);
+                    break;
+                case PHASE:
+                    ((Board) target).setPhase((Phase) oldValue);
+                    break;
+                case STEP:
+                    ((Board) target).setStep(oldInts[size]);
+                    break;
+                case CURRENT_PLAYER:
+                    ((Board) target).setCurrentPlayer((Player) oldValue);
+                    break;
+                case CHECKPOINT:
+                    ((Player) target).setLastCheckpoint(oldInts[size]);
+                    break;
+                case DAMAGE:
+                    ((Player) target).setDamage(oldInts[size]);
+                    break;
+                case DECK:
+                    ((CommandDeck) target).set((CommandDeck) oldValue);
+                    break;
+                case ACTIVATION_ORDER:
+                    ((Board) target).setActivationOrder((int[]) oldValue);
+                    break;
+                default:
+                    // MARK: nothing to revert
+            }
+            targets[size] = null;
+            oldValues[size] = null;
+        }
+    }
+
+    private void push(int kind, Object target, Object oldValue, int oldInt) {
+        if (size == kinds.length) {
+            int capacity = 2 * size;
+            kinds = Arrays.copyOf(kinds, capacity);
+            targets = Arrays.copyOf(targets, capacity);
+            oldValues = Arrays.copyOf(oldValues, capacity);
+            oldInts = Arrays.copyOf(oldInts, capacity);
+        }
+        kinds[size] = kind;
+        targets[size] = target;
+        oldValues[size] = oldValue;
+        oldInts[size] = oldInt;
+        size++;
+    }
+
+}
@@ -0,0 +1,546 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.fileaccess;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import dk.dtu.compute.se.pisd.roborally.controller.*;
+import dk.dtu.compute.se.pisd.roborally.model.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serializes a board with its layout, its players and their card fields
+ * and decks as JSON, without any reflection. Players, spaces and card
+ * fields do not exist without their board, so they are serialized as part
+ * of the board: references between the objects are serialized by indices
+ * and coordinates (the space of a player by its coordinates, the current
+ * player by its number), and the observers of the objects are not
+ * serialized at all. Only the spaces with walls or actions are serialized
+ * (see {@link Board#getLayoutSpaces()}), since all other spaces do not have
+ * any state of their own. Actions of unknown types are not serialized.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public class BoardTypeAdapter extends TypeAdapter<Board> {
+
+    final private CommandCardTypeAdapter cardAdapter = new CommandCardTypeAdapter();
+
+    /**
+     * Creates a Gson instance, which serializes boards and command cards by
+     * the hand-written adapters.
+     *
+     * @return the Gson instance
+     */
+    public static Gson createGson() {
+        return new GsonBuilder()
+                .registerTypeAdapter(Board.class, new BoardTypeAdapter())
+                .registerTypeAdapter(CommandCard.class, new CommandCardTypeAdapter())
+                .setPrettyPrinting()
+                .create();
+    }
+
+    @Override
+    public void write(JsonWriter out, Board board) throws IOException {
+        if (board == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("width").value(board.width);
+        out.name("height").value(board.height);
+        out.name("boardName").value(board.boardName);
+        out.name("gameId").value(board.getGameId());
+        out.name("layout").beginArray();
+        for (Space space: board.getLayoutSpaces()) {
+            writeSpace(out, space);
+        }
+        out.endArray();
+        out.name("players").beginArray();
+        for (int i = 0; i < board.getPlayersNumber(); i++) {
+            writePlayer(out, board.getPlayer(i));
+        }
+        out.endArray();
+        Player current = board.getCurrentPlayer();
+        out.name("currentPlayer").value(current != null ? board.getPlayerNumber(current) : -1);
+        out.name("phase").value(board.getPhase().name());
+        out.name("step").value(board.getStep());
+        out.name("stepMode").value(board.isStepMode());
+        int[] activationOrder = board.getActivationOrder();
+        if (activationOrder != null) {
+            out.name("activationOrder");
+            writeInts(out, activationOrder);
+        }
+        out.endObject();
+    }
+
+    private void writeSpace(@NotNull JsonWriter out, @NotNull Space space) throws IOException {
+        out.beginObject();
+        out.name("x").value(space.x);
+        out.name("y").value(space.y);
+        out.name("walls").beginArray();
+        for (Heading heading: space.getWalls()) {
+            out.value(heading.name());
+        }
+        out.endArray();
+        out.name("actions").beginArray();
+        for (FieldAction action: space.getActions()) {
+            writeAction(out, action);
+        }
+        out.endArray();
+        out.endObject();
+    }
+
+    private void writeAction(@NotNull JsonWriter out, @NotNull FieldAction action) throws IOException {
+        if (action instanceof ConveyorBelt) {
+            out.beginObject().name("type").value("ConveyorBelt");
+            out.name("heading").value(((ConveyorBelt) action).getHeading().name());
+        } else if (action instanceof Gear) {
+            out.beginObject().name("type").value("Gear");
+            out.name("clockwise").value(((Gear) action).isClockwise());
+        } else if (action instanceof PushPanel) {
+            out.beginObject().name("type").value("PushPanel");
+            out.name("heading").value(((PushPanel) action).getHeading().name());
+            out.name("registers").value(((PushPanel) action).getRegisters());
+        } else if (action instanceof CheckPoint) {
+            out.beginObject().name("type").value("CheckPoint");
+            out.name("number").value(((CheckPoint) action).getNumber());
+        } else if (action instanceof BoardLaser) {
+            out.beginObject().name("type").value("BoardLaser");
+            out.name("heading").value(((BoardLaser) action).getHeading().name());
+        } else if (action instanceof PriorityAntenna) {
+            out.beginObject().name("type").value("PriorityAntenna");
+        } else {
+            return;
+        }
+        out.endObject();
+    }
+
+    private void writePlayer(@NotNull JsonWriter out, @NotNull Player player) throws IOException {
+        out.beginObject();
+        out.name("name").value(player.getName());
+        out.name("color").value(player.getColor());
+        Space space = player.getSpace();
+        if (space != null) {
+            out.name("x").value(space.x);
+            out.name("y").value(space.y);
+        }
+        out.name("heading").value(player.getHeading().name());
+        out.name("lastCheckpoint").value(player.getLastCheckpoint());
+        out.name("damage").value(player.getDamage());
+        out.name("program").beginArray();
+        for (int i = 0; i < Player.NO_REGISTERS; i++) {
+            writeField(out, player.getProgramField(i));
+        }
+        out.endArray();
+        out.name("cards").beginArray();
+        for (int i = 0; i < Player.NO_CARDS; i++) {
+            writeField(out, player.getCardField(i));
+        }
+        out.endArray();
+        out.name("drawPile");
+        writeCommands(out, player.getDeck().getDrawPile());
+        out.name("discardPile");
+        writeCommands(out, player.getDeck().getDiscardPile());
+        out.endObject();
+    }
+
+    private void writeField(@NotNull JsonWriter out, @NotNull CommandCardField field) throws IOException {
+        out.beginObject();
+        out.name("card");
+        cardAdapter.write(out, field.getCard());
+        out.name("visible").value(field.isVisible());
+        out.endObject();
+    }
+
+    private static void writeCommands(@NotNull JsonWriter out, @NotNull int[] commands) throws IOException {
+        Command[] values = Command.values();
+        out.beginArray();
+        for (int command: commands) {
+            out.value(values[command].name());
+        }
+        out.endArray();
+    }
+
+    private static void writeInts(@NotNull JsonWriter out, @NotNull int[] values) throws IOException {
+        out.beginArray();
+        for (int value: values) {
+            out.value(value);
+        }
+        out.endArray();
+    }
+
+    @Override
+    public Board read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        int width = -1;
+        int height = -1;
+        String boardName = null;
+        Integer gameId = null;
+        Board board = null;
+        int currentPlayer = -1;
+        Phase phase = Phase.INITIALISATION;
+        int step = 0;
+        boolean stepMode = false;
+        int[] activationOrder = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            switch (name) {
+                case "width":
+                    width = in.nextInt();
+                    break;
+                case "height":
+                    height = in.nextInt();
+                    break;
+                case "boardName":
+                    boardName = in.nextString();
+                    break;
+                case "gameId":
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                    } else {
+                        gameId = in.nextInt();
+                    }
+                    break;
+                case "layout":
+                    board = createBoard(board, width, height, boardName);
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        readSpace(in, board);
+                    }
+                    in.endArray();
+                    break;
+                case "players":
+                    board = createBoard(board, width, height, boardName);
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        board.addPlayer(readPlayer(in, board));
+                    }
+                    in.endArray();
+                    break;
+                case "currentPlayer":
+                    currentPlayer = in.nextInt();
+                    break;
+                case "phase":
+                    phase = readEnum(in, Phase.class);
+                    break;
+                case "step":
+                    step = in.nextInt();
+                    break;
+                case "stepMode":
+                    stepMode = in.nextBoolean();
+                    break;
+                case "activationOrder":
+                    activationOrder = readInts(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        board = createBoard(board, width, height, boardName);
+        if (gameId != null) {
+            board.setGameId(gameId);
+        }
+        if (activationOrder != null) {
+            if (activationOrder.length != board.getPlayersNumber()) {
+                throw new IOException("Activation order does not match the players");
+            }
+            board.setActivationOrder(activationOrder);
+        }
+        board.setCurrentPlayer(board.getPlayer(currentPlayer));
+        board.setPhase(phase);
+        board.setStep(step);
+        board.setStepMode(stepMode);
+        return board;
+    }
+
+    private static Board createBoard(Board board, int width, int height, String boardName) throws IOException {
+        if (board != null) {
+            return board;
+        }
+        if (width <= 0 || height <= 0) {
+            throw new IOException("The size of the board must precede its layout and players");
+        }
+        return boardName != null ? new Board(width, height, boardName) : new Board(width, height);
+    }
+
+    private void readSpace(@NotNull JsonReader in, @NotNull Board board) throws IOException {
+        int x = -1;
+        int y = -1;
+        List<Heading> walls = new ArrayList<>();
+        List<FieldAction> actions = new ArrayList<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "x":
+                    x = in.nextInt();
+                    break;
+                case "y":
+                    y = in.nextInt();
+                    break;
+                case "walls":
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        walls.add(readEnum(in, Heading.class));
+                    }
+                    in.endArray();
+                    break;
+                case "actions":
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        FieldAction action = readAction(in);
+                        if (action != null) {
+                            actions.add(action);
+                        }
+                    }
+                    in.endArray();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        Space space = board.getSpace(x, y);
+        if (space == null) {
+            throw new IOException("No space (" + x + "," + y + ") on the board");
+        }
+        for (Heading heading: walls) {
+            space.addWall(heading);
+        }
+        for (FieldAction action: actions) {
+            space.addAction(action);
+        }
+    }
+
+    private FieldAction readAction(@NotNull JsonReader in) throws IOException {
+        String type = null;
+        Heading heading = Heading.SOUTH;
+        boolean clockwise = false;
+        int registers = 0;
+        int number = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "type":
+                    type = in.nextString();
+                    break;
+                case "heading":
+                    heading = readEnum(in, Heading.class);
+                    break;
+                case "clockwise":
+                    clockwise = in.nextBoolean();
+                    break;
+                case "registers":
+                    registers = in.nextInt();
+                    break;
+                case "number":
+                    number = in.nextInt();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        if (type == null) {
+            return null;
+        }
+        switch (type) {
+            case "ConveyorBelt":
+                return new ConveyorBelt(heading);
+            case "Gear":
+                return new Gear(clockwise);
+            case "PushPanel":
+                int[] active = new int[Integer.bitCount(registers)];
+                for (int i = 0, n = 0; i < 32; i++) {
+                    if ((registers & (1 << i)) != 0) {
+                        active[n++] = i;
+                    }
+                }
+                return new PushPanel(heading, active);
+            case "CheckPoint":
+                return new CheckPoint(number);
+            case "BoardLaser":
+                return new BoardLaser(heading);
+            case "PriorityAntenna":
+                return new PriorityAntenna();
+            default:
+                // actions of unknown types are ignored
+                return null;
+        }
+    }
+
+    private Player readPlayer(@NotNull JsonReader in, @NotNull Board board) throws IOException {
+        String name = null;
+        String color = null;
+        int x = -1;
+        int y = -1;
+        Heading heading = Heading.SOUTH;
+        int lastCheckpoint = 0;
+        int damage = 0;
+        List<CommandCard> program = new ArrayList<>();
+        List<Boolean> programVisible = new ArrayList<>();
+        List<CommandCard> cards = new ArrayList<>();
+        List<Boolean> cardsVisible = new ArrayList<>();
+        int[] drawPile = null;
+        int[] discardPile = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "name":
+                    name = in.nextString();
+                    break;
+                case "color":
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                    } else {
+                        color = in.nextString();
+                    }
+                    break;
+                case "x":
+                    x = in.nextInt();
+                    break;
+                case "y":
+                    y = in.nextInt();
+                    break;
+                case "heading":
+                    heading = readEnum(in, Heading.class);
+                    break;
+                case "lastCheckpoint":
+                    lastCheckpoint = in.nextInt();
+                    break;
+                case "damage":
+                    damage = in.nextInt();
+                    break;
+                case "program":
+                    readFields(in, program, programVisible);
+                    break;
+                case "cards":
+                    readFields(in, cards, cardsVisible);
+                    break;
+                case "drawPile":
+                    drawPile = readCommands(in);
+                    break;
+                case "discardPile":
+                    discardPile = readCommands(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        Player player = new Player(board, color, name);
+        player.setHeading(heading);
+        player.setLastCheckpoint(lastCheckpoint);
+        player.setDamage(damage);
+        if (x >= 0) {
+            Space space = board.getSpace(x, y);
+            if (space == null) {
+                throw new IOException("No space (" + x + "," + y + ") for player " + name);
+            }
+            player.setSpace(space);
+        }
+        for (int i = 0; i < Player.NO_REGISTERS && i < program.size(); i++) {
+            player.getProgramField(i).setCard(program.get(i));
+            player.getProgramField(i).setVisible(programVisible.get(i));
+        }
+        for (int i = 0; i < Player.NO_CARDS && i < cards.size(); i++) {
+            player.getCardField(i).setCard(cards.get(i));
+            player.getCardField(i).setVisible(cardsVisible.get(i));
+        }
+        if (drawPile != null && discardPile != null) {
+            player.getDeck().set(drawPile, discardPile);
+        }
+        return player;
+    }
+
+    private void readFields(@NotNull JsonReader in, @NotNull List<CommandCard> cards,
+                            @NotNull List<Boolean> visible) throws IOException {
+        in.beginArray();
+        while (in.hasNext()) {
+            CommandCard card = null;
+            boolean fieldVisible = true;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "card":
+                        card = cardAdapter.read(in);
+                        break;
+                    case "visible":
+                        fieldVisible = in.nextBoolean();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            cards.add(card);
+            visible.add(fieldVisible);
+        }
+        in.endArray();
+    }
+
+    private static int[] readCommands(@NotNull JsonReader in) throws IOException {
+        List<Integer> commands = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            commands.add(readEnum(in, Command.class).ordinal());
+        }
+        in.endArray();
+        return commands.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int[] readInts(@NotNull JsonReader in) throws IOException {
+        List<Integer> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            values.add(in.nextInt());
+        }
+        in.endArray();
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    static <E extends Enum<E>> E readEnum(@NotNull JsonReader in, @NotNull Class<E> type) throws IOException {
+        String name = in.nextString();
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown " + type.getSimpleName() + " " + name, e);
+        }
+    }
+
+}
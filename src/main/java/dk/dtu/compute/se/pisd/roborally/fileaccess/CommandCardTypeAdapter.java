@@ -0,0 +1,68 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.fileaccess;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import dk.dtu.compute.se.pisd.roborally.model.Command;
+import dk.dtu.compute.se.pisd.roborally.model.CommandCard;
+
+import java.io.IOException;
+
+/**
+ * Serializes a command card as the name of its command. Since command
+ * cards do not have any state, the same card is returned for all cards
+ * with the same command.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public class CommandCardTypeAdapter extends TypeAdapter<CommandCard> {
+
+    private static final CommandCard[] CARDS = new CommandCard[Command.values().length];
+    static {
+        for (Command command: Command.values()) {
+            CARDS[command.ordinal()] = new CommandCard(command);
+        }
+    }
+
+    @Override
+    public void write(JsonWriter out, CommandCard card) throws IOException {
+        if (card == null) {
+            out.nullValue();
+        } else {
+            out.value(card.command.name());
+        }
+    }
+
+    @Override
+    public CommandCard read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return CARDS[BoardTypeAdapter.readEnum(in, Command.class).ordinal()];
+    }
+
+}
@@ -0,0 +1,383 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.fileaccess;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import dk.dtu.compute.se.pisd.roborally.model.Board;
+import dk.dtu.compute.se.pisd.roborally.model.BoardSnapshot;
+import dk.dtu.compute.se.pisd.roborally.model.Command;
+import dk.dtu.compute.se.pisd.roborally.model.CommandDeck;
+import dk.dtu.compute.se.pisd.roborally.net.DeltaEncoder;
+import dk.dtu.compute.se.pisd.roborally.net.Protocol;
+import dk.dtu.compute.se.pisd.roborally.net.StateDecoder;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Saves and loads the state of games. A game file starts with a magic
+ * number and a format byte, followed by the state of the board encoded
+ * as a keyframe (see {@link DeltaEncoder#encodeKeyframe()}); this way,
+ * games are saved in exactly the same way as their states are sent to the
+ * clients of the game server. In the {@link #DEFLATE} format, the keyframe
+ * is compressed by raw deflate with a preset dictionary, which contains
+ * the strings and byte patterns occurring in almost every game (like the
+ * names and colors of the players and the encoding of the card fields);
+ * this way, even the small files of single games compress well.
+ *
+ * The dictionary must never change, since files could not be read anymore
+ * otherwise; a new dictionary needs a new format.
+ *
+ * The keyframe is followed by the decks of the players: the number of
+ * players (byte), and for every player the size of its draw pile (short)
+ * followed by the commands of its cards (bytes, from the bottom to the top
+ * of the pile), and its discard pile in the same way. When a file ends
+ * after the keyframe, the players of the loaded game start with new decks.
+ *
+ * Games can also be saved as JSON (see {@link BoardTypeAdapter}), which
+ * is readable; {@link #load(InputStream)} recognizes both kinds of files.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public final class GameFile {
+
+    /**
+     * The magic number at the start of every game file ("RRSV").
+     */
+    public static final int MAGIC = 0x52525356;
+
+    /**
+     * The format of uncompressed game files.
+     */
+    public static final byte RAW = 0;
+
+    /**
+     * The format of game files compressed by raw deflate with the first
+     * version of the preset dictionary.
+     */
+    public static final byte DEFLATE = 1;
+
+    private static final byte[] DICTIONARY = createDictionary();
+
+    private static final Gson GSON = BoardTypeAdapter.createGson();
+
+    private GameFile() {
+    }
+
+    /**
+     * Saves the state of the given board to the given file.
+     *
+     * @param board the board
+     * @param file the file
+     * @param compressed true if the file should be compressed
+     * @throws IOException if the file cannot be written
+     */
+    public static void save(@NotNull Board board, @NotNull Path file, boolean compressed) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            save(board, out, compressed);
+        }
+    }
+
+    /**
+     * Saves the state of the given snapshot to the given file. Since
+     * snapshots do not contain the decks of the players, the players of
+     * the saved game get new decks.
+     *
+     * @param snapshot the snapshot of a board
+     * @param file the file
+     * @param compressed true if the file should be compressed
+     * @throws IOException if the file cannot be written
+     */
+    public static void save(@NotNull BoardSnapshot snapshot, @NotNull Path file, boolean compressed) throws IOException {
+        save(snapshot.toBoard(), file, compressed);
+    }
+
+    /**
+     * Writes the state of the given board to the given stream. The stream
+     * is not closed.
+     *
+     * @param board the board
+     * @param out the stream
+     * @param compressed true if the state should be compressed
+     * @throws IOException if the stream cannot be written
+     */
+    public static void save(@NotNull Board board, @NotNull OutputStream out, boolean compressed) throws IOException {
+        // the encoder observes the board it encodes, so it gets a copy
+        ByteBuffer keyframe = new DeltaEncoder(board.copy(), Integer.MAX_VALUE).encodeKeyframe();
+        byte[] header = {
+                (byte) (MAGIC >>> 24), (byte) (MAGIC >>> 16), (byte) (MAGIC >>> 8), (byte) MAGIC,
+                compressed ? DEFLATE : RAW};
+        out.write(header);
+        if (compressed) {
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+            try {
+                deflater.setDictionary(DICTIONARY);
+                DeflaterOutputStream deflated = new DeflaterOutputStream(out, deflater);
+                write(deflated, keyframe);
+                writeDecks(deflated, board);
+                deflated.finish();
+            } finally {
+                deflater.end();
+            }
+        } else {
+            write(out, keyframe);
+            writeDecks(out, board);
+        }
+        out.flush();
+    }
+
+    /**
+     * Saves the state of the given board as JSON to the given file.
+     *
+     * @param board the board
+     * @param file the file
+     * @throws IOException if the file cannot be written
+     */
+    public static void saveJson(@NotNull Board board, @NotNull Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            saveJson(board, out);
+        }
+    }
+
+    /**
+     * Writes the state of the given board as JSON to the given writer. The
+     * writer is not closed.
+     *
+     * @param board the board
+     * @param out the writer
+     * @throws IOException if the writer cannot be written
+     */
+    public static void saveJson(@NotNull Board board, @NotNull Writer out) throws IOException {
+        try {
+            GSON.toJson(board, Board.class, out);
+        } catch (JsonParseException e) {
+            throw new IOException("Game could not be written", e);
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a game saved as JSON from the given reader. The reader is not
+     * closed.
+     *
+     * @param in the reader
+     * @return the board in the state of the saved game
+     * @throws IOException if the reader cannot be read or does not contain a game
+     */
+    public static Board loadJson(@NotNull Reader in) throws IOException {
+        try {
+            Board board = GSON.fromJson(in, Board.class);
+            if (board == null) {
+                throw new IOException("Game file does not contain a game");
+            }
+            return board;
+        } catch (JsonParseException | IllegalStateException e) {
+            // Gson reports errors of the underlying reader as JsonIOException
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Game file is corrupt", e);
+        }
+    }
+
+    /**
+     * Loads a game from the given file.
+     *
+     * @param file the file
+     * @return the board in the state of the saved game
+     * @throws IOException if the file cannot be read or is not a game file
+     */
+    public static Board load(@NotNull Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            return load(in);
+        }
+    }
+
+    /**
+     * Reads a game from the given stream; a compressed game is decompressed
+     * while it is read, and a game saved as JSON is recognized by its first
+     * byte. The stream is not closed.
+     *
+     * @param in the stream
+     * @return the board in the state of the saved game
+     * @throws IOException if the stream cannot be read or does not contain a game
+     */
+    public static Board load(@NotNull InputStream in) throws IOException {
+        if (!in.markSupported()) {
+            in = new BufferedInputStream(in);
+        }
+        in.mark(1);
+        int first = in.read();
+        in.reset();
+        if (first == '{') {
+            return loadJson(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a RoboRally game file");
+        }
+        byte format = data.readByte();
+        switch (format) {
+            case RAW:
+                return read(data);
+            case DEFLATE:
+                Inflater inflater = new Inflater(true);
+                try {
+                    inflater.setDictionary(DICTIONARY);
+                    return read(new DataInputStream(new InflaterInputStream(in, inflater)));
+                } finally {
+                    inflater.end();
+                }
+            default:
+                throw new IOException("Unknown format " + format + " of game file");
+        }
+    }
+
+    private static void write(@NotNull OutputStream out, @NotNull ByteBuffer frame) throws IOException {
+        out.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+    }
+
+    private static void writeDecks(@NotNull OutputStream out, @NotNull Board board) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeByte(board.getPlayersNumber());
+        for (int i = 0; i < board.getPlayersNumber(); i++) {
+            CommandDeck deck = board.getPlayer(i).getDeck();
+            writePile(data, deck.getDrawPile());
+            writePile(data, deck.getDiscardPile());
+        }
+        data.flush();
+    }
+
+    private static void writePile(@NotNull DataOutputStream out, @NotNull int[] pile) throws IOException {
+        out.writeShort(pile.length);
+        for (int command: pile) {
+            out.writeByte(command);
+        }
+    }
+
+    private static void readDecks(@NotNull DataInputStream in, @NotNull Board board) throws IOException {
+        int players = in.read();
+        if (players < 0) {
+            // the file ends after the keyframe
+            return;
+        }
+        if (players != board.getPlayersNumber()) {
+            throw new IOException("The decks do not match the players of the game");
+        }
+        for (int i = 0; i < players; i++) {
+            int[] drawPile = readPile(in);
+            int[] discardPile = readPile(in);
+            board.getPlayer(i).getDeck().set(drawPile, discardPile);
+        }
+    }
+
+    private static int[] readPile(@NotNull DataInputStream in) throws IOException {
+        int[] pile = new int[in.readUnsignedShort()];
+        for (int i = 0; i < pile.length; i++) {
+            pile[i] = in.readUnsignedByte();
+            if (pile[i] >= Command.values().length) {
+                throw new IOException("Unknown command " + pile[i] + " in a deck");
+            }
+        }
+        return pile;
+    }
+
+    private static Board read(@NotNull DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length <= 0 || length > Protocol.MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid length " + length + " of game");
+        }
+        byte[] frame = new byte[length];
+        try {
+            in.readFully(frame);
+        } catch (EOFException e) {
+            throw new IOException("Game file is truncated", e);
+        }
+        StateDecoder decoder = new StateDecoder();
+        try {
+            if (!decoder.apply(ByteBuffer.wrap(frame))) {
+                throw new IOException("Game file does not contain a game");
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Game file is corrupt", e);
+        }
+        Board board = decoder.getBoard();
+        try {
+            readDecks(in, board);
+        } catch (EOFException e) {
+            throw new IOException("Game file is truncated", e);
+        }
+        return board;
+    }
+
+    /**
+     * Creates the preset dictionary, which contains the names and colors of
+     * the players, the name of the default board, and the encodings of the
+     * card fields as they occur in keyframes. Since deflate finds close
+     * matches more cheaply, the most frequent patterns come last.
+     */
+    private static byte[] createDictionary() {
+        String[] strings = {
+                "defaultboard",
+                "magenta", "grey", "orange", "blue", "green", "red",
+                "Player 6", "Player 5", "Player 4", "Player 3", "Player 2", "Player 1"};
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        for (String string: strings) {
+            Protocol.putString(buffer, string);
+        }
+        // the card fields of a player: empty program fields followed by
+        // visible cards of all kinds
+        for (int i = 0; i < 5; i++) {
+            buffer.put(Protocol.NONE).put((byte) 0);
+        }
+        for (int i = 0; i < 4; i++) {
+            for (int command = 0; command < 4; command++) {
+                buffer.put((byte) command).put((byte) 1);
+            }
+        }
+        buffer.flip();
+        byte[] dictionary = new byte[buffer.remaining()];
+        buffer.get(dictionary);
+        return dictionary;
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.fileaccess;
+
+import dk.dtu.compute.se.pisd.roborally.model.Board;
+import dk.dtu.compute.se.pisd.roborally.net.Protocol;
+import dk.dtu.compute.se.pisd.roborally.net.StateDecoder;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A replay file recorded by a {@link ReplayWriter}, from which the state
+ * of the game at any step can be restored. The file is mapped into memory,
+ * so that only the parts needed for a step are actually read.
+ *
+ * A replay file starts with a magic number ("RRRP") and a version byte,
+ * followed by the frames of the keyframes and deltas as encoded by the
+ * {@link dk.dtu.compute.se.pisd.roborally.net.DeltaEncoder}. After the
+ * frames, there is the index with two longs for every step: the offset of
+ * the last keyframe before the step, and the offset of the end of the last
+ * frame of the step. The file ends with a fixed-size trailer: the offset of
+ * the index (long), the number of steps (int) and the magic number again.
+ * The state at a step is restored by decoding the keyframe and applying
+ * the deltas up to the end of the step; since there is a keyframe after
+ * every given number of deltas, this takes the same time for every step,
+ * independently of the length of the game.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public class ReplayFile implements Closeable {
+
+    /**
+     * The magic number at the start and the end of every replay file ("RRRP").
+     */
+    public static final int MAGIC = 0x52525250;
+
+    static final byte VERSION = 1;
+
+    static final int HEADER_SIZE = 5;
+
+    static final int INDEX_ENTRY_SIZE = 16;
+
+    static final int TRAILER_SIZE = 16;
+
+    final private FileChannel channel;
+
+    final private ByteBuffer buffer;
+
+    final private int indexOffset;
+
+    final private int steps;
+
+    private ReplayFile(@NotNull FileChannel channel, @NotNull ByteBuffer buffer) throws IOException {
+        this.channel = channel;
+        this.buffer = buffer;
+        int size = buffer.limit();
+        if (size < HEADER_SIZE + TRAILER_SIZE ||
+                buffer.getInt(0) != MAGIC || buffer.getInt(size - 4) != MAGIC) {
+            throw new IOException("Not a RoboRally replay file");
+        }
+        if (buffer.get(4) != VERSION) {
+            throw new IOException("Unknown version " + buffer.get(4) + " of replay file");
+        }
+        long indexOffset = buffer.getLong(size - TRAILER_SIZE);
+        steps = buffer.getInt(size - 8);
+        if (steps <= 0 || indexOffset < HEADER_SIZE ||
+                indexOffset + (long) steps * INDEX_ENTRY_SIZE != size - TRAILER_SIZE) {
+            throw new IOException("The index of the replay file is corrupt");
+        }
+        this.indexOffset = (int) indexOffset;
+    }
+
+    /**
+     * Opens the given replay file.
+     *
+     * @param file the file
+     * @return the replay
+     * @throws IOException if the file cannot be read or is not a replay file
+     */
+    public static ReplayFile open(@NotNull Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Replay file is too large");
+            }
+            return new ReplayFile(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of steps of the replay, including the initial step 0
+     */
+    public int getSteps() {
+        return steps;
+    }
+
+    /**
+     * Restores the state of the game at the given step.
+     *
+     * @param step the step
+     * @return a new board in the state of the game at the step
+     * @throws IOException if the frames of the step are corrupt
+     */
+    public Board getBoard(int step) throws IOException {
+        if (step < 0 || step >= steps) {
+            throw new IndexOutOfBoundsException("Step " + step + " of " + steps + " steps");
+        }
+        int entry = indexOffset + step * INDEX_ENTRY_SIZE;
+        long start = buffer.getLong(entry);
+        long end = buffer.getLong(entry + 8);
+        if (start < HEADER_SIZE || start >= end || end > indexOffset) {
+            throw new IOException("The index entry of step " + step + " is corrupt");
+        }
+
+        StateDecoder decoder = new StateDecoder();
+        ByteBuffer frames = buffer.duplicate();
+        int position = (int) start;
+        try {
+            while (position < end) {
+                int length = frames.getInt(position);
+                if (length <= 0 || position + Protocol.LENGTH_SIZE + length > end) {
+                    throw new IOException("The frame at offset " + position + " is corrupt");
+                }
+                frames.limit(position + Protocol.LENGTH_SIZE + length).position(position + Protocol.LENGTH_SIZE);
+                if (!decoder.apply(frames.slice())) {
+                    throw new IOException("The frame at offset " + position + " is not a keyframe or delta");
+                }
+                frames.limit(frames.capacity());
+                position += Protocol.LENGTH_SIZE + length;
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("The frames of step " + step + " are corrupt", e);
+        }
+        return decoder.getBoard();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
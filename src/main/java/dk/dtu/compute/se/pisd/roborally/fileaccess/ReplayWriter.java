@@ -0,0 +1,177 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.fileaccess;
+
+import dk.dtu.compute.se.pisd.roborally.model.Board;
+import dk.dtu.compute.se.pisd.roborally.net.DeltaEncoder;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Records a game to a replay file, which can be read by {@link ReplayFile}.
+ * The writer observes the board by a {@link DeltaEncoder}; after every
+ * step of the game, {@link #recordStep()} appends the delta of that step
+ * and, every given number of deltas, a keyframe. When the writer is
+ * closed, it appends the index of the steps and the trailer (see
+ * {@link ReplayFile} for the format).
+ *
+ * The writer must be used by the thread which changes the board, and all
+ * players must be added to the board before the writer is created.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public class ReplayWriter implements Closeable {
+
+    final private DeltaEncoder encoder;
+
+    final private DataOutputStream out;
+
+    private long position = 0;
+
+    private long keyframe;
+
+    // the index of the steps: the offsets of the keyframe and of the end of
+    // the last frame of every step
+    private long[] index = new long[256];
+
+    private int steps = 0;
+
+    private boolean closed = false;
+
+    /**
+     * Creates a writer which records the game on the given board to the
+     * given file; the current state of the board is recorded as step 0.
+     *
+     * @param board the board
+     * @param file the file
+     * @param keyframeInterval the number of deltas after which a new keyframe is written
+     * @throws IOException if the file cannot be written
+     */
+    public ReplayWriter(@NotNull Board board, @NotNull Path file, int keyframeInterval) throws IOException {
+        if (keyframeInterval <= 0) {
+            throw new IllegalArgumentException("The keyframe interval must be positive");
+        }
+        this.encoder = new DeltaEncoder(board, keyframeInterval);
+        OutputStream stream;
+        try {
+            stream = Files.newOutputStream(file);
+        } catch (IOException | RuntimeException e) {
+            encoder.close();
+            throw e;
+        }
+        this.out = new DataOutputStream(new BufferedOutputStream(stream));
+        try {
+            out.writeInt(ReplayFile.MAGIC);
+            out.writeByte(ReplayFile.VERSION);
+            position = ReplayFile.HEADER_SIZE;
+            writeKeyframe();
+            addStep();
+        } catch (IOException | RuntimeException e) {
+            encoder.close();
+            out.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of steps recorded so far, including step 0
+     */
+    public int getSteps() {
+        return steps;
+    }
+
+    /**
+     * Records the current state of the board as the next step.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public void recordStep() throws IOException {
+        if (closed) {
+            throw new IllegalStateException("The replay is closed");
+        }
+        ByteBuffer delta = encoder.encodeDelta();
+        if (delta != null) {
+            write(delta);
+            if (encoder.isKeyframeDue()) {
+                writeKeyframe();
+            }
+        }
+        addStep();
+    }
+
+    /**
+     * Writes the index and the trailer and closes the file; the writer
+     * stops observing the board.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            long indexOffset = position;
+            for (int i = 0; i < 2 * steps; i++) {
+                out.writeLong(index[i]);
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(steps);
+            out.writeInt(ReplayFile.MAGIC);
+        } finally {
+            encoder.close();
+            out.close();
+        }
+    }
+
+    private void writeKeyframe() throws IOException {
+        keyframe = position;
+        write(encoder.encodeKeyframe());
+    }
+
+    private void write(@NotNull ByteBuffer frame) throws IOException {
+        int length = frame.remaining();
+        out.write(frame.array(), frame.arrayOffset() + frame.position(), length);
+        position += length;
+    }
+
+    private void addStep() {
+        if (2 * steps == index.length) {
+            index = Arrays.copyOf(index, 2 * index.length);
+        }
+        index[2 * steps] = keyframe;
+        index[2 * steps + 1] = position;
+        steps++;
+    }
+
+}
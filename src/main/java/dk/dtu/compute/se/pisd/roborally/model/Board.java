@@ -22,10 +22,20 @@
 package dk.dtu.compute.se.pisd.roborally.model;
 
 import dk.dtu.compute.se.pisd.designpatterns.observer.Subject;
+import dk.dtu.compute.se.pisd.roborally.controller.FieldAction;
+import dk.dtu.compute.se.pisd.roborally.controller.PriorityAntenna;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
 
 import static dk.dtu.compute.se.pisd.roborally.model.Phase.INITIALISATION;
 
@@ -45,7 +55,15 @@ public class Board extends Subject {
 
     private Integer gameId;
 
-    private final Space[][] spaces;
+    // the spaces are stored in square chunks, which are allocated only when
+    // one of their spaces is accessed for the first time
+    static final int CHUNK_BITS = 4;
+
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private final int chunksPerRow;
+
+    private final AtomicReferenceArray<Space[]> chunks;
 
     private final List<Player> players = new ArrayList<>();
 
@@ -57,24 +75,136 @@ public class Board extends Subject {
 
     private boolean stepMode;
 
+    private boolean notificationsSuppressed;
+
+    private long hash;
+
+    // the spaces with walls or actions, and the spaces with actions of each
+    // type, in the order in which they were added to the layout
+    final private List<Space> layoutSpaces = new ArrayList<>();
+
+    final private Map<Class<? extends FieldAction>, List<Space>> elementSpaces = new HashMap<>();
+
+    private long layoutSignature = 0;
+
+    // the versions of the occupation of the rows and columns of the board,
+    // which are incremented whenever a player enters or leaves a row (column)
+    private final int[] rowVersions;
+
+    private final int[] columnVersions;
+
+    // the occupied spaces of the board, row by row (bit y * width + x) and
+    // column by column (bit x * height + y), so that the occupied spaces
+    // along a row or column can be found without visiting the spaces
+    private final BitSet rowOccupancy = new BitSet();
+
+    private final BitSet columnOccupancy = new BitSet();
+
+    // the space of the priority antenna, and the numbers of the players
+    // ordered by their priority with the rank of each player in this order;
+    // the order is maintained incrementally whenever a player moves
+    private Space antenna;
+
+    private int[] priorities = new int[8];
+
+    private int[] priorityRanks = new int[8];
+
+    // the numbers of the players in the order in which they are activated
+    // in the current register (null for the order of the players)
+    private int[] activationOrder;
+
+    final private StampedLock lock = new StampedLock();
+
+    // the thread currently updating the board, the nesting depth of its
+    // updates and the stamp of its write lock; the depth and the stamp are
+    // accessed by the updating thread only
+    private volatile Thread updater;
+
+    private int updateDepth;
+
+    private long updateStamp;
+
     public Board(int width, int height, @NotNull String boardName) {
         this.boardName = boardName;
         this.width = width;
         this.height = height;
-        spaces = new Space[width][height];
-        for (int x = 0; x < width; x++) {
-            for(int y = 0; y < height; y++) {
-                Space space = new Space(this, x, y);
-                spaces[x][y] = space;
-            }
-        }
+        chunksPerRow = (width + CHUNK_SIZE - 1) >> CHUNK_BITS;
+        rowVersions = new int[height];
+        columnVersions = new int[width];
+        chunks = new AtomicReferenceArray<>(chunksPerRow * ((height + CHUNK_SIZE - 1) >> CHUNK_BITS));
         this.stepMode = false;
+        this.hash = Zobrist.phase(phase) ^ Zobrist.step(step);
     }
 
     public Board(int width, int height) {
         this(width, height, "defaultboard");
     }
 
+    /**
+     * Creates a copy of this board with copies of all its spaces and players
+     * and their programs, cards and decks. The copy does not have any
+     * observers and is completely independent of this board, except for the
+     * command cards, which are shared between the two boards (command cards
+     * do not have any state that could change).
+     *
+     * @return an independent copy of this board
+     */
+    public Board copy() {
+        Board copy = new Board(width, height, boardName);
+        copy.gameId = gameId;
+        copyLayout(copy);
+        for (Player player: players) {
+            Player playerCopy = new Player(copy, player.getColor(), player.getName());
+            playerCopy.setHeading(player.getHeading());
+            playerCopy.setLastCheckpoint(player.getLastCheckpoint());
+            playerCopy.setDamage(player.getDamage());
+            Space space = player.getSpace();
+            if (space != null) {
+                playerCopy.setSpace(copy.getSpace(space.x, space.y));
+            }
+            for (int i = 0; i < Player.NO_REGISTERS; i++) {
+                copyField(player.getProgramField(i), playerCopy.getProgramField(i));
+            }
+            for (int i = 0; i < Player.NO_CARDS; i++) {
+                copyField(player.getCardField(i), playerCopy.getCardField(i));
+            }
+            playerCopy.getDeck().set(player.getDeck());
+            copy.addPlayer(playerCopy);
+        }
+        copy.activationOrder = activationOrder;
+        if (current != null) {
+            copy.setCurrentPlayer(copy.getPlayer(players.indexOf(current)));
+        }
+        copy.setPhase(phase);
+        copy.setStep(step);
+        copy.setStepMode(stepMode);
+        return copy;
+    }
+
+    /**
+     * Adds the walls and actions of this board to the given board of the
+     * same size; the actions are shared between the boards (actions do
+     * not have any state that could change).
+     *
+     * @param target the board to which the layout is copied
+     */
+    public void copyLayout(@NotNull Board target) {
+        for (Space space: layoutSpaces) {
+            Space targetSpace = target.getSpace(space.x, space.y);
+            for (Heading heading: space.getWalls()) {
+                targetSpace.addWall(heading);
+            }
+            for (FieldAction action: space.getActions()) {
+                targetSpace.addAction(action);
+            }
+        }
+    }
+
+    private static void copyField(@NotNull CommandCardField source, @NotNull CommandCardField target) {
+        target.setCard(source.getCard());
+        target.setVisible(source.isVisible());
+    }
+
     public Integer getGameId() {
         return gameId;
     }
@@ -92,12 +222,55 @@ public class Board extends Subject {
     public Space getSpace(int x, int y) {
         if (x >= 0 && x < width &&
                 y >= 0 && y < height) {
-            return spaces[x][y];
+            int chunkNo = (y >> CHUNK_BITS) * chunksPerRow + (x >> CHUNK_BITS);
+            Space[] chunk = chunks.get(chunkNo);
+            if (chunk == null) {
+                chunk = allocateChunk(chunkNo);
+            }
+            return chunk[((y & (CHUNK_SIZE - 1)) << CHUNK_BITS) + (x & (CHUNK_SIZE - 1))];
         } else {
             return null;
         }
     }
 
+    private Space[] allocateChunk(int chunkNo) {
+        int x0 = (chunkNo % chunksPerRow) << CHUNK_BITS;
+        int y0 = (chunkNo / chunksPerRow) << CHUNK_BITS;
+        Space[] chunk = new Space[CHUNK_SIZE * CHUNK_SIZE];
+        for (int y = y0; y < Math.min(y0 + CHUNK_SIZE, height); y++) {
+            for (int x = x0; x < Math.min(x0 + CHUNK_SIZE, width); x++) {
+                chunk[((y - y0) << CHUNK_BITS) + (x - x0)] = new Space(this, x, y);
+            }
+        }
+        // when another thread allocated the chunk in the meantime, its
+        // spaces are used, so that every position has exactly one space
+        if (chunks.compareAndSet(chunkNo, null, chunk)) {
+            return chunk;
+        }
+        return chunks.get(chunkNo);
+    }
+
+    /**
+     * Returns the number of spaces allocated for this board so far. The
+     * spaces of a board are allocated in chunks of {@link #CHUNK_SIZE} times
+     * {@link #CHUNK_SIZE} spaces, when a space of the chunk is accessed for the
+     * first time; so the memory of large boards, on which most spaces are never
+     * visited, depends on the visited area only.
+     *
+     * @return the number of allocated spaces
+     */
+    public int getAllocatedSpacesNumber() {
+        int allocated = 0;
+        for (int i = 0; i < chunks.length(); i++) {
+            if (chunks.get(i) != null) {
+                int x0 = (i % chunksPerRow) << CHUNK_BITS;
+                int y0 = (i / chunksPerRow) << CHUNK_BITS;
+                allocated += Math.min(CHUNK_SIZE, width - x0) * Math.min(CHUNK_SIZE, height - y0);
+            }
+        }
+        return allocated;
+    }
+
     public int getPlayersNumber() {
         return players.size();
     }
@@ -105,6 +278,21 @@ public class Board extends Subject {
     public void addPlayer(@NotNull Player player) {
         if (player.board == this && !players.contains(player)) {
             players.add(player);
+            int playerNo = players.size() - 1;
+            hash ^= Zobrist.heading(playerNo, player.getHeading());
+            hash ^= Zobrist.checkpoint(playerNo, player.getLastCheckpoint());
+            hash ^= Zobrist.damage(playerNo, player.getDamage());
+            Space space = player.getSpace();
+            if (space != null) {
+                hash ^= Zobrist.position(playerNo, space.x, space.y);
+            }
+            if (playerNo == priorities.length) {
+                priorities = Arrays.copyOf(priorities, 2 * playerNo);
+                priorityRanks = Arrays.copyOf(priorityRanks, 2 * playerNo);
+            }
+            priorities[playerNo] = playerNo;
+            priorityRanks[playerNo] = playerNo;
+            reprioritise(playerNo);
             notifyChange();
         }
     }
@@ -122,7 +310,13 @@ public class Board extends Subject {
     }
 
     public void setCurrentPlayer(Player player) {
-        if (player != this.current && players.contains(player)) {
+        if (player != this.current && (player == null || players.contains(player))) {
+            if (this.current != null) {
+                hash ^= Zobrist.currentPlayer(players.indexOf(this.current));
+            }
+            if (player != null) {
+                hash ^= Zobrist.currentPlayer(players.indexOf(player));
+            }
             this.current = player;
             notifyChange();
         }
@@ -132,8 +326,27 @@ public class Board extends Subject {
         return phase;
     }
 
+    /**
+     * Returns the options the current player can choose from, when the
+     * execution of the programs is suspended in the {@link Phase#PLAYER_INTERACTION}
+     * phase: these are the options of the interactive command card in the
+     * current register of the current player.
+     *
+     * @return the options of the pending choice; empty if no choice is pending
+     */
+    public List<Command> getPendingOptions() {
+        if (phase == Phase.PLAYER_INTERACTION && current != null && step >= 0 && step < Player.NO_REGISTERS) {
+            CommandCard card = current.getProgramField(step).getCard();
+            if (card != null) {
+                return card.command.getOptions();
+            }
+        }
+        return Collections.emptyList();
+    }
+
     public void setPhase(Phase phase) {
         if (phase != this.phase) {
+            hash ^= Zobrist.phase(this.phase) ^ Zobrist.phase(phase);
             this.phase = phase;
             notifyChange();
         }
@@ -145,6 +358,7 @@ public class Board extends Subject {
 
     public void setStep(int step) {
         if (step != this.step) {
+            hash ^= Zobrist.step(this.step) ^ Zobrist.step(step);
             this.step = step;
             notifyChange();
         }
@@ -161,6 +375,409 @@ public class Board extends Subject {
         }
     }
 
+    /**
+     * Returns the Zobrist hash of the current state of the board, which
+     * covers the positions, headings, checkpoints and damage of all players,
+     * the current player, the step and the phase. The hash is updated
+     * incrementally with every change of these attributes, so obtaining it
+     * is cheap. Two boards in
+     * the same state have the same hash; different states have different
+     * hashes with very high probability.
+     *
+     * @return the hash of the current state of the board
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    void playerMoved(@NotNull Player player, Space oldSpace, Space newSpace) {
+        if (oldSpace != null) {
+            rowVersions[oldSpace.y]++;
+            columnVersions[oldSpace.x]++;
+            rowOccupancy.clear(oldSpace.y * width + oldSpace.x);
+            columnOccupancy.clear(oldSpace.x * height + oldSpace.y);
+        }
+        if (newSpace != null) {
+            rowVersions[newSpace.y]++;
+            columnVersions[newSpace.x]++;
+            rowOccupancy.set(newSpace.y * width + newSpace.x);
+            columnOccupancy.set(newSpace.x * height + newSpace.y);
+        }
+        int playerNo = players.indexOf(player);
+        if (playerNo >= 0) {
+            if (oldSpace != null) {
+                hash ^= Zobrist.position(playerNo, oldSpace.x, oldSpace.y);
+            }
+            if (newSpace != null) {
+                hash ^= Zobrist.position(playerNo, newSpace.x, newSpace.y);
+            }
+            if (antenna != null) {
+                reprioritise(playerNo);
+            }
+        }
+    }
+
+    /**
+     * Returns the space of the priority antenna of the board, which is the
+     * first space to which a {@link PriorityAntenna} was added.
+     *
+     * @return the space of the priority antenna, or null if there is none
+     */
+    public Space getAntenna() {
+        return antenna;
+    }
+
+    /**
+     * Returns the numbers of the players ordered by their priority: players
+     * closer to the priority antenna (by the number of spaces horizontally
+     * and vertically) have a higher priority; players with the same
+     * distance, and all players on a board without antenna, are ordered by
+     * their numbers; players not on the board come last. The order is
+     * maintained incrementally, so that obtaining it does not need sorting.
+     *
+     * @return the numbers of the players ordered by priority
+     */
+    public int[] getPriorityOrder() {
+        return Arrays.copyOf(priorities, players.size());
+    }
+
+    /**
+     * Returns the numbers of the players in the order in which they are
+     * activated in the current register (see {@link #getPriorityOrder()}).
+     *
+     * @return the activation order, or null if the players are activated in the order of their numbers
+     */
+    public int[] getActivationOrder() {
+        return activationOrder != null ? activationOrder.clone() : null;
+    }
+
+    /**
+     * Sets the order in which the players are activated in the current
+     * register. This order is fixed at the start of the register, so that it
+     * does not change when players move during the register.
+     *
+     * @param activationOrder the numbers of all players in the order of their activation (or null)
+     */
+    public void setActivationOrder(int[] activationOrder) {
+        if (activationOrder != null && activationOrder.length != players.size()) {
+            throw new IllegalArgumentException("The activation order must contain all players!");
+        }
+        if (!Arrays.equals(activationOrder, this.activationOrder)) {
+            this.activationOrder = activationOrder != null ? activationOrder.clone() : null;
+            notifyChange();
+        }
+    }
+
+    /**
+     * Returns the player activated after the given player in the current
+     * register (see {@link #setActivationOrder(int[])}).
+     *
+     * @param player the player
+     * @return the next player, or null if the given player is the last one
+     */
+    public Player getNextActivatedPlayer(@NotNull Player player) {
+        int playerNo = getPlayerNumber(player);
+        if (playerNo < 0) {
+            return null;
+        }
+        if (activationOrder == null) {
+            return getPlayer(playerNo + 1);
+        }
+        for (int i = 0; i < activationOrder.length - 1; i++) {
+            if (activationOrder[i] == playerNo) {
+                return getPlayer(activationOrder[i + 1]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Moves the player with the given number to its place in the priority
+     * order, assuming that all other players are in order. Only the players
+     * between the old and the new place of the player are shifted.
+     */
+    private void reprioritise(int playerNo) {
+        int rank = priorityRanks[playerNo];
+        while (rank > 0 && comparePriorities(playerNo, priorities[rank - 1]) < 0) {
+            priorities[rank] = priorities[rank - 1];
+            priorityRanks[priorities[rank]] = rank;
+            rank--;
+        }
+        while (rank < players.size() - 1 && comparePriorities(playerNo, priorities[rank + 1]) > 0) {
+            priorities[rank] = priorities[rank + 1];
+            priorityRanks[priorities[rank]] = rank;
+            rank++;
+        }
+        priorities[rank] = playerNo;
+        priorityRanks[playerNo] = rank;
+    }
+
+    private int comparePriorities(int playerNo1, int playerNo2) {
+        int result = Integer.compare(antennaDistance(players.get(playerNo1)), antennaDistance(players.get(playerNo2)));
+        return result != 0 ? result : Integer.compare(playerNo1, playerNo2);
+    }
+
+    private int antennaDistance(@NotNull Player player) {
+        Space space = player.getSpace();
+        if (antenna == null) {
+            return 0;
+        } else if (space == null) {
+            return Integer.MAX_VALUE;
+        }
+        return Math.abs(space.x - antenna.x) + Math.abs(space.y - antenna.y);
+    }
+
+    /**
+     * Returns the version of the occupation of the given row, which changes
+     * whenever a player enters or leaves a space of this row. Results computed
+     * from the occupation of a row (like the targets of lasers along the row)
+     * can be cached as long as the version of the row does not change.
+     *
+     * @param y the y coordinate of the row
+     * @return the version of the row
+     */
+    public int getRowVersion(int y) {
+        return rowVersions[y];
+    }
+
+    /**
+     * Returns the version of the occupation of the given column (see
+     * {@link #getRowVersion(int)}).
+     *
+     * @param x the x coordinate of the column
+     * @return the version of the column
+     */
+    public int getColumnVersion(int x) {
+        return columnVersions[x];
+    }
+
+    /**
+     * Returns whether there is a player on the space with the given
+     * coordinates. Other than {@link Space#getPlayer()}, this does not
+     * need the space, which might not even be allocated yet.
+     *
+     * @param x the x coordinate of the space
+     * @param y the y coordinate of the space
+     * @return true if a player is on the space; false otherwise
+     */
+    public boolean isOccupied(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height && rowOccupancy.get(y * width + x);
+    }
+
+    /**
+     * Returns whether there is a player on any of the spaces of the given
+     * row from x coordinate <code>fromX</code> to <code>toX</code> (both
+     * inclusive).
+     *
+     * @param y the y coordinate of the row
+     * @param fromX the x coordinate of the first space of the segment
+     * @param toX the x coordinate of the last space of the segment
+     * @return true if a player is on the segment of the row; false otherwise
+     */
+    public boolean isRowOccupied(int y, int fromX, int toX) {
+        int next = rowOccupancy.nextSetBit(y * width + fromX);
+        return next >= 0 && next <= y * width + toX;
+    }
+
+    /**
+     * Returns whether there is a player on any of the spaces of the given
+     * column from y coordinate <code>fromY</code> to <code>toY</code> (both
+     * inclusive).
+     *
+     * @param x the x coordinate of the column
+     * @param fromY the y coordinate of the first space of the segment
+     * @param toY the y coordinate of the last space of the segment
+     * @return true if a player is on the segment of the column; false otherwise
+     */
+    public boolean isColumnOccupied(int x, int fromY, int toY) {
+        int next = columnOccupancy.nextSetBit(x * height + fromY);
+        return next >= 0 && next <= x * height + toY;
+    }
+
+    /**
+     * Returns the first space with a player when going from the given space
+     * in the given heading, wrapping around at the edges of the board like
+     * {@link #getNeighbour(Space, Heading)}, but ignoring walls. The given
+     * space itself is considered only last, i.e. when there is no other
+     * player in its row (column).
+     *
+     * @param from the space to start from
+     * @param heading the heading to go
+     * @return the first space with a player, or null if there is none in the row (column)
+     */
+    public Space getFirstOccupied(@NotNull Space from, @NotNull Heading heading) {
+        int x = from.x;
+        int y = from.y;
+        switch (heading) {
+            case SOUTH:
+                y = next(columnOccupancy, x * height, height, y, true);
+                break;
+            case WEST:
+                x = next(rowOccupancy, y * width, width, x, false);
+                break;
+            case NORTH:
+                y = next(columnOccupancy, x * height, height, y, false);
+                break;
+            case EAST:
+                x = next(rowOccupancy, y * width, width, x, true);
+                break;
+        }
+        return x >= 0 && y >= 0 ? getSpace(x, y) : null;
+    }
+
+    /**
+     * Returns the offset of the first set bit of the line of bits from
+     * <code>start</code> (of the given length) after the given offset in the
+     * given direction, going around the end of the line; the bit at the given
+     * offset is the last one considered. Returns -1 if no bit is set.
+     */
+    private static int next(BitSet bits, int start, int length, int offset, boolean forward) {
+        int next;
+        if (forward) {
+            next = bits.nextSetBit(start + offset + 1);
+            if (next < 0 || next >= start + length) {
+                next = bits.nextSetBit(start);
+                if (next < 0 || next > start + offset) {
+                    return -1;
+                }
+            }
+        } else {
+            next = bits.previousSetBit(start + offset - 1);
+            if (next < start) {
+                next = bits.previousSetBit(start + length - 1);
+                if (next < start + offset) {
+                    return -1;
+                }
+            }
+        }
+        return next - start;
+    }
+
+    void playerDamaged(@NotNull Player player, int oldDamage, int newDamage) {
+        int playerNo = players.indexOf(player);
+        if (playerNo >= 0) {
+            hash ^= Zobrist.damage(playerNo, oldDamage) ^ Zobrist.damage(playerNo, newDamage);
+        }
+    }
+
+    void playerReachedCheckpoint(@NotNull Player player, int oldCheckpoint, int newCheckpoint) {
+        int playerNo = players.indexOf(player);
+        if (playerNo >= 0) {
+            hash ^= Zobrist.checkpoint(playerNo, oldCheckpoint) ^ Zobrist.checkpoint(playerNo, newCheckpoint);
+        }
+    }
+
+    /**
+     * Returns a hash of the layout of the board (the walls and the actions
+     * of its spaces), which changes whenever a wall or an action is added.
+     * Results computed from the layout only (like the distances to the
+     * checkpoints) can be cached under this signature and shared between
+     * all boards with the same layout.
+     *
+     * @return the signature of the layout of this board
+     */
+    public long getLayoutSignature() {
+        return layoutSignature;
+    }
+
+    /**
+     * Returns the spaces with walls or actions.
+     *
+     * @return the unmodifiable list of the spaces with walls or actions
+     */
+    public List<Space> getLayoutSpaces() {
+        return Collections.unmodifiableList(layoutSpaces);
+    }
+
+    /**
+     * Returns the spaces that have an action of the given type, in the order
+     * in which the actions were added. This way, the actions of one type
+     * can be activated without looking at all the spaces of the board.
+     *
+     * @param type the type of the action
+     * @return the unmodifiable list of spaces with an action of this type
+     */
+    public List<Space> getElementSpaces(@NotNull Class<? extends FieldAction> type) {
+        List<Space> spaces = elementSpaces.get(type);
+        return spaces != null ? Collections.unmodifiableList(spaces) : Collections.emptyList();
+    }
+
+    /**
+     * Called by a space when a wall was added to it.
+     *
+     * @param space the space
+     * @param heading the side of the wall
+     * @param first true if this is the first wall or action of the space
+     */
+    void wallAdded(@NotNull Space space, @NotNull Heading heading, boolean first) {
+        layoutSignature ^= Zobrist.wall(space.x, space.y, heading);
+        if (first) {
+            layoutSpaces.add(space);
+        }
+    }
+
+    /**
+     * Called by a space when an action was added to it.
+     *
+     * @param space the space
+     * @param action the action
+     * @param first true if this is the first wall or action of the space
+     * @param firstOfType true if this is the first action of its type on the space
+     */
+    void actionAdded(@NotNull Space space, @NotNull FieldAction action, boolean first, boolean firstOfType) {
+        int element = 31 * action.getClass().getName().hashCode() + action.hashCode();
+        layoutSignature ^= Zobrist.element(space.x, space.y, element);
+        if (first) {
+            layoutSpaces.add(space);
+        }
+        if (firstOfType) {
+            elementSpaces.computeIfAbsent(action.getClass(), type -> new ArrayList<>()).add(space);
+        }
+        if (action instanceof PriorityAntenna && antenna == null) {
+            antenna = space;
+            for (int i = 1; i < players.size(); i++) {
+                int playerNo = priorities[i];
+                int rank = i;
+                while (rank > 0 && comparePriorities(playerNo, priorities[rank - 1]) < 0) {
+                    priorities[rank] = priorities[rank - 1];
+                    rank--;
+                }
+                priorities[rank] = playerNo;
+            }
+            for (int i = 0; i < players.size(); i++) {
+                priorityRanks[priorities[i]] = i;
+            }
+        }
+    }
+
+    void playerTurned(@NotNull Player player, @NotNull Heading oldHeading, @NotNull Heading newHeading) {
+        int playerNo = players.indexOf(player);
+        if (playerNo >= 0) {
+            hash ^= Zobrist.heading(playerNo, oldHeading) ^ Zobrist.heading(playerNo, newHeading);
+        }
+    }
+
+    public boolean isNotificationsSuppressed() {
+        return notificationsSuppressed;
+    }
+
+    /**
+     * Suppresses (or enables again) the update notifications of this board
+     * and of all its spaces, players and command card fields. This way,
+     * changes can be tried out and reverted again without the views being
+     * updated for every intermediate state.
+     *
+     * @param notificationsSuppressed true if notifications should be suppressed
+     */
+    public void setNotificationsSuppressed(boolean notificationsSuppressed) {
+        this.notificationsSuppressed = notificationsSuppressed;
+    }
+
+    @Override
+    protected boolean isNotificationEnabled() {
+        return !notificationsSuppressed;
+    }
+
     public int getPlayerNumber(@NotNull Player player) {
         if (player.board == this) {
             return players.indexOf(player);
@@ -180,6 +797,9 @@ public class Board extends Subject {
      * @return the space in the given direction; null if there is no (reachable) neighbour
      */
     public Space getNeighbour(@NotNull Space space, @NotNull Heading heading) {
+        if (space.hasWall(heading)) {
+            return null;
+        }
         int x = space.x;
         int y = space.y;
         switch (heading) {
@@ -197,7 +817,85 @@ public class Board extends Subject {
                 break;
         }
 
-        return getSpace(x, y);
+        Space neighbour = getSpace(x, y);
+        if (neighbour != null && neighbour.hasWall(heading.opposite())) {
+            return null;
+        }
+        return neighbour;
+    }
+
+    /**
+     * Starts an update of this board, which must be ended by {@link #endUpdate()}
+     * (in a finally block). While a thread updates the board, readers using
+     * {@link #read(Function)} do not see any of the changes of the update
+     * until it is ended, so that they never see a partially changed board.
+     * Updates are reentrant: an update started by the updating thread again
+     * ends with the outermost update. The game controller wraps all its
+     * operations into updates.
+     */
+    public void beginUpdate() {
+        if (updater == Thread.currentThread()) {
+            updateDepth++;
+        } else {
+            long stamp = lock.writeLock();
+            updater = Thread.currentThread();
+            updateStamp = stamp;
+            updateDepth = 1;
+        }
+    }
+
+    /**
+     * Ends an update of this board started by {@link #beginUpdate()}.
+     */
+    public void endUpdate() {
+        if (updater != Thread.currentThread()) {
+            throw new IllegalMonitorStateException("The board is not updated by this thread!");
+        }
+        if (--updateDepth == 0) {
+            updater = null;
+            lock.unlockWrite(updateStamp);
+        }
+    }
+
+    /**
+     * Computes some result from a consistent state of this board, which can be
+     * called from any thread (e.g. by views or spectators while the game is
+     * updated by another thread). The reader is first executed optimistically
+     * without any locking; if the board was updated in the meantime, the result
+     * is discarded and the reader is executed again under a read lock, which
+     * waits for the update to end. So readers never block the updating thread,
+     * unless they conflict with an update. Since the reader may be executed on
+     * an inconsistent state first, it must not have side effects.
+     *
+     * @param reader the function computing the result from the board
+     * @param <T> the type of the result
+     * @return the result computed from a consistent state of the board
+     */
+    public <T> T read(@NotNull Function<Board, T> reader) {
+        if (updater == Thread.currentThread()) {
+            // the updating thread sees its own changes
+            return reader.apply(this);
+        }
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = reader.apply(this);
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+                // the exception was caused by an update in the meantime
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return reader.apply(this);
+        } finally {
+            lock.unlockRead(stamp);
+        }
     }
 
     public String getStatusMessage() {
@@ -211,9 +909,9 @@ public class Board extends Subject {
         //      which is counted up every time a player makes a move; the
         //      status line should show the current player and the number
         //      of the current move!
-        return "Phase: " + getPhase().name() +
-                ", Player = " + getCurrentPlayer().getName() +
-                ", Step: " + getStep();
+        return read(board -> "Phase: " + board.getPhase().name() +
+                ", Player = " + board.getCurrentPlayer().getName() +
+                ", Step: " + board.getStep());
 
         // TODO Task1: add a counter along with a getter and a setter, so the
         //      state of the board (game) contains the number of moves, which then can
@@ -0,0 +1,327 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * The differences between two snapshots of boards (see {@link BoardSnapshot}),
+ * e.g. between the state of a game on the server and on a client, or
+ * between two states of the same game. The differences are computed in
+ * time linear in the number of players: the spaces of the boards are
+ * never compared, since the only state of a space is its player, whose
+ * changes are covered by the positions of the players; and the layouts
+ * of the boards are compared by their signatures. Player snapshots shared
+ * between the two board snapshots (see {@link BoardSnapshot#of(Board, BoardSnapshot)})
+ * are not compared at all.
+ *
+ * For every player, the differences are reported as a combination of the
+ * flags {@link #POSITION}, {@link #HEADING}, {@link #CHECKPOINT},
+ * {@link #DAMAGE}, {@link #INFO}, {@link #PROGRAM} and {@link #CARDS}.
+ * Cards are compared by their commands, so that snapshots of independent
+ * boards (with different card objects) can be compared.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public final class BoardDiff {
+
+    public static final int POSITION = 1;
+    public static final int HEADING = 1 << 1;
+    public static final int CHECKPOINT = 1 << 2;
+    public static final int DAMAGE = 1 << 3;
+    public static final int INFO = 1 << 4;
+    public static final int PROGRAM = 1 << 5;
+    public static final int CARDS = 1 << 6;
+
+    final private BoardSnapshot from;
+
+    final private BoardSnapshot to;
+
+    final private boolean phaseChanged;
+
+    final private boolean stepChanged;
+
+    final private boolean currentPlayerChanged;
+
+    final private boolean activationOrderChanged;
+
+    final private boolean layoutChanged;
+
+    final private boolean playersNumberChanged;
+
+    // for every player (of both snapshots), the flags of the changes of the
+    // player, and the bit sets of its changed program and card fields
+    final private int[] playerChanges;
+    final private int[] programChanges;
+    final private int[] cardChanges;
+
+    private int changedPlayersNumber = 0;
+
+    private BoardDiff(@NotNull BoardSnapshot from, @NotNull BoardSnapshot to) {
+        this.from = from;
+        this.to = to;
+        phaseChanged = from.phase != to.phase;
+        stepChanged = from.step != to.step || from.stepMode != to.stepMode;
+        currentPlayerChanged = from.currentPlayer != to.currentPlayer;
+        activationOrderChanged = !Arrays.equals(from.getActivationOrder(), to.getActivationOrder());
+        layoutChanged = from.width != to.width || from.height != to.height ||
+                from.layoutSignature != to.layoutSignature;
+        playersNumberChanged = from.getPlayersNumber() != to.getPlayersNumber();
+
+        int players = Math.max(from.getPlayersNumber(), to.getPlayersNumber());
+        playerChanges = new int[players];
+        programChanges = new int[players];
+        cardChanges = new int[players];
+        for (int i = 0; i < players; i++) {
+            PlayerSnapshot fromPlayer = from.getPlayer(i);
+            PlayerSnapshot toPlayer = to.getPlayer(i);
+            if (fromPlayer != toPlayer) {
+                if (fromPlayer == null || toPlayer == null) {
+                    playerChanges[i] = POSITION | HEADING | CHECKPOINT | DAMAGE | INFO | PROGRAM | CARDS;
+                    programChanges[i] = (1 << Player.NO_REGISTERS) - 1;
+                    cardChanges[i] = (1 << Player.NO_CARDS) - 1;
+                } else {
+                    compare(i, fromPlayer, toPlayer);
+                }
+                if (playerChanges[i] != 0) {
+                    changedPlayersNumber++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the differences between two snapshots.
+     *
+     * @param from the first snapshot
+     * @param to the second snapshot
+     * @return the differences between the snapshots
+     */
+    public static BoardDiff of(@NotNull BoardSnapshot from, @NotNull BoardSnapshot to) {
+        return new BoardDiff(from, to);
+    }
+
+    private void compare(int i, @NotNull PlayerSnapshot from, @NotNull PlayerSnapshot to) {
+        int changes = 0;
+        if (from.x != to.x || from.y != to.y) {
+            changes |= POSITION;
+        }
+        if (from.heading != to.heading) {
+            changes |= HEADING;
+        }
+        if (from.lastCheckpoint != to.lastCheckpoint) {
+            changes |= CHECKPOINT;
+        }
+        if (from.damage != to.damage) {
+            changes |= DAMAGE;
+        }
+        if (!equals(from.name, to.name) || !equals(from.color, to.color)) {
+            changes |= INFO;
+        }
+        int fields = 0;
+        for (int j = 0; j < Player.NO_REGISTERS; j++) {
+            if (!sameCard(from.getProgramCard(j), to.getProgramCard(j)) ||
+                    from.isProgramFieldVisible(j) != to.isProgramFieldVisible(j)) {
+                fields |= 1 << j;
+            }
+        }
+        if (fields != 0) {
+            changes |= PROGRAM;
+            programChanges[i] = fields;
+        }
+        fields = 0;
+        for (int j = 0; j < Player.NO_CARDS; j++) {
+            if (!sameCard(from.getCard(j), to.getCard(j)) ||
+                    from.isCardFieldVisible(j) != to.isCardFieldVisible(j)) {
+                fields |= 1 << j;
+            }
+        }
+        if (fields != 0) {
+            changes |= CARDS;
+            cardChanges[i] = fields;
+        }
+        playerChanges[i] = changes;
+    }
+
+    private static boolean sameCard(CommandCard card1, CommandCard card2) {
+        return card1 == card2 || (card1 != null && card2 != null && card1.command == card2.command);
+    }
+
+    private static boolean equals(String s1, String s2) {
+        return s1 == null ? s2 == null : s1.equals(s2);
+    }
+
+    /**
+     * @return true if the two snapshots represent the same state; false otherwise
+     */
+    public boolean isEmpty() {
+        return !phaseChanged && !stepChanged && !currentPlayerChanged && !activationOrderChanged && !layoutChanged &&
+                !playersNumberChanged && changedPlayersNumber == 0;
+    }
+
+    public boolean isPhaseChanged() {
+        return phaseChanged;
+    }
+
+    /**
+     * @return true if the step or the step mode changed; false otherwise
+     */
+    public boolean isStepChanged() {
+        return stepChanged;
+    }
+
+    public boolean isCurrentPlayerChanged() {
+        return currentPlayerChanged;
+    }
+
+    public boolean isActivationOrderChanged() {
+        return activationOrderChanged;
+    }
+
+    /**
+     * @return true if the size or the layout of the boards differs; false otherwise
+     */
+    public boolean isLayoutChanged() {
+        return layoutChanged;
+    }
+
+    public boolean isPlayersNumberChanged() {
+        return playersNumberChanged;
+    }
+
+    public int getChangedPlayersNumber() {
+        return changedPlayersNumber;
+    }
+
+    /**
+     * Returns the changes of the player with the given number as a
+     * combination of the flags of this class.
+     *
+     * @param playerNo the number of the player
+     * @return the flags of the changes of the player; 0 if the player did not change
+     */
+    public int getPlayerChanges(int playerNo) {
+        return playerNo >= 0 && playerNo < playerChanges.length ? playerChanges[playerNo] : 0;
+    }
+
+    /**
+     * @param playerNo the number of the player
+     * @return the changed program fields of the player (bit i for register i)
+     */
+    public int getProgramChanges(int playerNo) {
+        return playerNo >= 0 && playerNo < programChanges.length ? programChanges[playerNo] : 0;
+    }
+
+    /**
+     * @param playerNo the number of the player
+     * @return the changed card fields of the player (bit i for card field i)
+     */
+    public int getCardChanges(int playerNo) {
+        return playerNo >= 0 && playerNo < cardChanges.length ? cardChanges[playerNo] : 0;
+    }
+
+    /**
+     * Describes the differences in a human readable way, e.g. for logging
+     * the differences between the states of a server and a client.
+     *
+     * @return the description of the differences
+     */
+    @Override
+    public String toString() {
+        if (isEmpty()) {
+            return "no differences";
+        }
+        StringBuilder result = new StringBuilder();
+        if (layoutChanged) {
+            append(result, "layout");
+        }
+        if (phaseChanged) {
+            append(result, "phase " + from.phase + " -> " + to.phase);
+        }
+        if (stepChanged) {
+            append(result, "step " + from.step + " -> " + to.step);
+        }
+        if (currentPlayerChanged) {
+            append(result, "current player " + from.currentPlayer + " -> " + to.currentPlayer);
+        }
+        if (activationOrderChanged) {
+            append(result, "activation order " + Arrays.toString(from.getActivationOrder()) +
+                    " -> " + Arrays.toString(to.getActivationOrder()));
+        }
+        if (playersNumberChanged) {
+            append(result, "players " + from.getPlayersNumber() + " -> " + to.getPlayersNumber());
+        }
+        for (int i = 0; i < playerChanges.length; i++) {
+            int changes = playerChanges[i];
+            PlayerSnapshot fromPlayer = from.getPlayer(i);
+            PlayerSnapshot toPlayer = to.getPlayer(i);
+            if (changes != 0 && fromPlayer != null && toPlayer != null) {
+                StringBuilder player = new StringBuilder("player " + i + ":");
+                if ((changes & POSITION) != 0) {
+                    player.append(" position (").append(fromPlayer.x).append(",").append(fromPlayer.y)
+                            .append(") -> (").append(toPlayer.x).append(",").append(toPlayer.y).append(")");
+                }
+                if ((changes & HEADING) != 0) {
+                    player.append(" heading ").append(fromPlayer.heading).append(" -> ").append(toPlayer.heading);
+                }
+                if ((changes & CHECKPOINT) != 0) {
+                    player.append(" checkpoint ").append(fromPlayer.lastCheckpoint).append(" -> ").append(toPlayer.lastCheckpoint);
+                }
+                if ((changes & DAMAGE) != 0) {
+                    player.append(" damage ").append(fromPlayer.damage).append(" -> ").append(toPlayer.damage);
+                }
+                if ((changes & INFO) != 0) {
+                    player.append(" name/color");
+                }
+                if ((changes & PROGRAM) != 0) {
+                    player.append(" program fields ").append(fields(programChanges[i]));
+                }
+                if ((changes & CARDS) != 0) {
+                    player.append(" card fields ").append(fields(cardChanges[i]));
+                }
+                append(result, player.toString());
+            }
+        }
+        return result.toString();
+    }
+
+    private static String fields(int bits) {
+        StringBuilder result = new StringBuilder("[");
+        for (int i = 0; bits >>> i != 0; i++) {
+            if ((bits & (1 << i)) != 0) {
+                result.append(result.length() > 1 ? ", " : "").append(i);
+            }
+        }
+        return result.append("]").toString();
+    }
+
+    private static void append(StringBuilder result, String difference) {
+        if (result.length() > 0) {
+            result.append("; ");
+        }
+        result.append(difference);
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.model;
+
+import dk.dtu.compute.se.pisd.roborally.controller.FieldAction;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * An immutable copy of the layout of a board (the walls and actions of
+ * its spaces) as part of a {@link BoardSnapshot}. Since the layout of a
+ * board does not change during a game, all snapshots of a board share
+ * the same layout, as long as its layout signature does not change.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+final class BoardLayout {
+
+    static final BoardLayout EMPTY = new BoardLayout();
+
+    final long signature;
+
+    // for the i-th space with walls or actions: its coordinates,
+    // its walls (bit h for heading h) and its actions
+    private final int[] xs;
+    private final int[] ys;
+    private final int[] walls;
+    private final FieldAction[][] actions;
+
+    private BoardLayout() {
+        signature = 0;
+        xs = new int[0];
+        ys = new int[0];
+        walls = new int[0];
+        actions = new FieldAction[0][];
+    }
+
+    private BoardLayout(@NotNull Board board) {
+        signature = board.getLayoutSignature();
+        List<Space> spaces = board.getLayoutSpaces();
+        xs = new int[spaces.size()];
+        ys = new int[spaces.size()];
+        walls = new int[spaces.size()];
+        actions = new FieldAction[spaces.size()][];
+        for (int i = 0; i < spaces.size(); i++) {
+            Space space = spaces.get(i);
+            xs[i] = space.x;
+            ys[i] = space.y;
+            for (Heading heading: space.getWalls()) {
+                walls[i] |= 1 << heading.ordinal();
+            }
+            actions[i] = space.getActions().toArray(new FieldAction[0]);
+        }
+    }
+
+    /**
+     * Returns the layout of the given board; if the given previous layout
+     * has the same signature, the previous layout is returned instead of
+     * a new one.
+     *
+     * @param board the board
+     * @param previous a previous layout of the board (or null)
+     * @return the layout of the board
+     */
+    static BoardLayout of(@NotNull Board board, BoardLayout previous) {
+        if (previous != null && previous.signature == board.getLayoutSignature()) {
+            return previous;
+        }
+        if (board.getLayoutSignature() == 0 && board.getLayoutSpaces().isEmpty()) {
+            return EMPTY;
+        }
+        return new BoardLayout(board);
+    }
+
+    /**
+     * Adds the walls and actions of this layout to the given (empty) board.
+     *
+     * @param board the board
+     */
+    void applyTo(@NotNull Board board) {
+        for (int i = 0; i < xs.length; i++) {
+            Space space = board.getSpace(xs[i], ys[i]);
+            for (Heading heading: Heading.values()) {
+                if ((walls[i] & (1 << heading.ordinal())) != 0) {
+                    space.addWall(heading);
+                }
+            }
+            for (FieldAction action: actions[i]) {
+                space.addAction(action);
+            }
+        }
+    }
+
+}
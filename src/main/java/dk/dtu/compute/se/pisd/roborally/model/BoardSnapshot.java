@@ -0,0 +1,189 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.model;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An immutable snapshot of the state of a board, which can be read
+ * safely from any thread (e.g. for saving the game in the background or
+ * for showing the game to spectators) while the game on the board goes on.
+ * A snapshot must be taken by the thread that changes the board, though.
+ *
+ * Snapshots of a game are cheap when they are taken one after the other:
+ * a snapshot that is taken with the previous snapshot of the same board
+ * (see {@link #of(Board, BoardSnapshot)}) shares all the parts that did
+ * not change since then with the previous snapshot. Since the only state
+ * of the spaces, which changes during a game, is the player on them, the
+ * spaces are not stored in the snapshot separately; the occupation of the
+ * spaces is represented by the positions of the player snapshots. The
+ * layout of the board (walls and actions) is shared by all snapshots of
+ * the board.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public final class BoardSnapshot {
+
+    public final int width;
+
+    public final int height;
+
+    public final String boardName;
+
+    public final Integer gameId;
+
+    public final Phase phase;
+
+    public final int step;
+
+    public final boolean stepMode;
+
+    /**
+     * The number of the current player; -1 if there is no current player.
+     */
+    public final int currentPlayer;
+
+    /**
+     * The hash of the board at the time the snapshot was taken (see {@link Board#getHash()}).
+     */
+    public final long hash;
+
+    /**
+     * The signature of the layout of the board (see {@link Board#getLayoutSignature()}).
+     */
+    public final long layoutSignature;
+
+    private final BoardLayout layout;
+
+    private final int[] activationOrder;
+
+    private final PlayerSnapshot[] players;
+
+    private BoardSnapshot(@NotNull Board board, BoardSnapshot previous) {
+        width = board.width;
+        height = board.height;
+        boardName = board.boardName;
+        gameId = board.getGameId();
+        phase = board.getPhase();
+        step = board.getStep();
+        stepMode = board.isStepMode();
+        Player current = board.getCurrentPlayer();
+        currentPlayer = current != null ? board.getPlayerNumber(current) : -1;
+        hash = board.getHash();
+        layout = BoardLayout.of(board, previous != null ? previous.layout : null);
+        layoutSignature = layout.signature;
+        activationOrder = board.getActivationOrder();
+
+        players = new PlayerSnapshot[board.getPlayersNumber()];
+        for (int i = 0; i < players.length; i++) {
+            PlayerSnapshot previousPlayer = previous != null ? previous.getPlayer(i) : null;
+            players[i] = PlayerSnapshot.of(board.getPlayer(i), previousPlayer);
+        }
+    }
+
+    /**
+     * Takes a snapshot of the current state of the given board.
+     *
+     * @param board the board
+     * @return a snapshot of the board
+     */
+    public static BoardSnapshot of(@NotNull Board board) {
+        return new BoardSnapshot(board, null);
+    }
+
+    /**
+     * Takes a snapshot of the current state of the given board, sharing
+     * the snapshots of all players that did not change with the given
+     * previous snapshot of the same board.
+     *
+     * @param board the board
+     * @param previous a previous snapshot of the same board (or null)
+     * @return a snapshot of the board
+     */
+    public static BoardSnapshot of(@NotNull Board board, BoardSnapshot previous) {
+        if (previous != null && (previous.width != board.width || previous.height != board.height)) {
+            previous = null;
+        }
+        return new BoardSnapshot(board, previous);
+    }
+
+    /**
+     * @return the activation order of the players (see {@link Board#getActivationOrder()})
+     */
+    public int[] getActivationOrder() {
+        return activationOrder != null ? activationOrder.clone() : null;
+    }
+
+    public int getPlayersNumber() {
+        return players.length;
+    }
+
+    public PlayerSnapshot getPlayer(int i) {
+        if (i >= 0 && i < players.length) {
+            return players[i];
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the number of the player on the space with the given coordinates.
+     *
+     * @param x the x coordinate of the space
+     * @param y the y coordinate of the space
+     * @return the number of the player on this space; -1 if the space is free
+     */
+    public int getPlayerNumberAt(int x, int y) {
+        for (int i = 0; i < players.length; i++) {
+            if (players[i].x == x && players[i].y == y) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Creates a new board in the state of this snapshot. The new board has
+     * no observers and is independent of the board the snapshot was taken
+     * from.
+     *
+     * @return a new board in the state of this snapshot
+     */
+    public Board toBoard() {
+        Board board = new Board(width, height, boardName);
+        if (gameId != null) {
+            board.setGameId(gameId);
+        }
+        layout.applyTo(board);
+        for (PlayerSnapshot player: players) {
+            board.addPlayer(player.toPlayer(board));
+        }
+        board.setActivationOrder(activationOrder);
+        board.setCurrentPlayer(board.getPlayer(currentPlayer));
+        board.setPhase(phase);
+        board.setStep(step);
+        board.setStepMode(stepMode);
+        return board;
+    }
+
+}
@@ -64,4 +64,10 @@ public class CommandCardField extends Subject {
             notifyChange();
         }
     }
+
+    @Override
+    protected boolean isNotificationEnabled() {
+        return player == null || player.board.isNotificationEnabled();
+    }
+
 }
@@ -0,0 +1,206 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The deck of command cards of a player, which consists of a draw pile and a
+ * discard pile. The cards are represented by the ordinals of their commands,
+ * which are stored in primitive arrays; so drawing, discarding and shuffling
+ * cards does not allocate any objects. When the draw pile is empty, the
+ * discard pile is shuffled and becomes the new draw pile. Initially, all
+ * cards of the deck are on the discard pile, so that they are shuffled
+ * when the first card is drawn.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public final class CommandDeck {
+
+    private int[] drawPile;
+
+    private int drawSize = 0;
+
+    private int[] discardPile;
+
+    private int discardSize = 0;
+
+    /**
+     * Creates a deck with the default number of copies of every command
+     * (see {@link #getDefaultCopies(Command)}).
+     */
+    public CommandDeck() {
+        int size = 0;
+        for (Command command: Command.values()) {
+            size += getDefaultCopies(command);
+        }
+        drawPile = new int[size];
+        discardPile = new int[size];
+        for (Command command: Command.values()) {
+            for (int i = 0; i < getDefaultCopies(command); i++) {
+                discardPile[discardSize++] = command.ordinal();
+            }
+        }
+    }
+
+    private CommandDeck(@NotNull CommandDeck deck) {
+        drawPile = deck.drawPile.clone();
+        drawSize = deck.drawSize;
+        discardPile = deck.discardPile.clone();
+        discardSize = deck.discardSize;
+    }
+
+    /**
+     * Returns the number of cards of the given command in a new deck.
+     *
+     * @param command the command
+     * @return the number of cards with this command
+     */
+    public static int getDefaultCopies(@NotNull Command command) {
+        switch (command) {
+            case FORWARD:
+                return 6;
+            case RIGHT:
+            case LEFT:
+            case FAST_FORWARD:
+                return 4;
+            default:
+                return 2;
+        }
+    }
+
+    public int getDrawSize() {
+        return drawSize;
+    }
+
+    public int getDiscardSize() {
+        return discardSize;
+    }
+
+    /**
+     * @return the ordinals of the commands of the cards on the draw pile,
+     *         from the bottom to the top of the pile
+     */
+    public int[] getDrawPile() {
+        return Arrays.copyOf(drawPile, drawSize);
+    }
+
+    /**
+     * @return the ordinals of the commands of the cards on the discard pile,
+     *         from the bottom to the top of the pile
+     */
+    public int[] getDiscardPile() {
+        return Arrays.copyOf(discardPile, discardSize);
+    }
+
+    /**
+     * Sets the piles of this deck (e.g. when a saved game is loaded).
+     *
+     * @param drawPile the ordinals of the commands on the draw pile, from the bottom to the top
+     * @param discardPile the ordinals of the commands on the discard pile, from the bottom to the top
+     */
+    public void set(@NotNull int[] drawPile, @NotNull int[] discardPile) {
+        // both piles must be able to hold all cards of the deck
+        int size = drawPile.length + discardPile.length;
+        this.drawPile = Arrays.copyOf(drawPile, size);
+        this.drawSize = drawPile.length;
+        this.discardPile = Arrays.copyOf(discardPile, size);
+        this.discardSize = discardPile.length;
+    }
+
+    /**
+     * Draws the top card from the draw pile. If the draw pile is empty, the
+     * discard pile is shuffled with the given random number generator first,
+     * and becomes the new draw pile.
+     *
+     * @param random the random number generator of the game
+     * @return the ordinal of the command of the drawn card; -1 if the
+     *         draw pile and the discard pile are both empty
+     */
+    public int draw(@NotNull Random random) {
+        if (drawSize == 0) {
+            if (discardSize == 0) {
+                return -1;
+            }
+            int[] pile = drawPile;
+            drawPile = discardPile;
+            drawSize = discardSize;
+            discardPile = pile;
+            discardSize = 0;
+            shuffle(random);
+        }
+        return drawPile[--drawSize];
+    }
+
+    /**
+     * Puts a card on the discard pile.
+     *
+     * @param command the ordinal of the command of the card
+     */
+    public void discard(int command) {
+        if (discardSize == discardPile.length) {
+            // can only happen when cards are discarded, which were not drawn
+            // from this deck; then both piles must be able to hold them
+            discardPile = Arrays.copyOf(discardPile, 2 * discardSize);
+            drawPile = Arrays.copyOf(drawPile, discardPile.length);
+        }
+        discardPile[discardSize++] = command;
+    }
+
+    /**
+     * Shuffles the draw pile in place (Fisher-Yates shuffle).
+     *
+     * @param random the random number generator of the game
+     */
+    public void shuffle(@NotNull Random random) {
+        for (int i = drawSize - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int card = drawPile[i];
+            drawPile[i] = drawPile[j];
+            drawPile[j] = card;
+        }
+    }
+
+    /**
+     * @return an independent copy of this deck
+     */
+    public CommandDeck copy() {
+        return new CommandDeck(this);
+    }
+
+    /**
+     * Sets the state of this deck to the state of the given deck.
+     *
+     * @param deck the deck whose piles should be copied
+     */
+    public void set(@NotNull CommandDeck deck) {
+        drawPile = deck.drawPile.clone();
+        drawSize = deck.drawSize;
+        discardPile = deck.discardPile.clone();
+        discardSize = deck.discardSize;
+    }
+
+}
@@ -45,9 +45,15 @@ public class Player extends Subject {
     private Space space;
     private Heading heading = SOUTH;
 
+    private int lastCheckpoint = 0;
+
+    private int damage = 0;
+
     private CommandCardField[] program;
     private CommandCardField[] cards;
 
+    final private CommandDeck deck = new CommandDeck();
+
     public Player(@NotNull Board board, String color, @NotNull String name) {
         this.board = board;
         this.name = name;
@@ -101,6 +107,7 @@ public class Player extends Subject {
         if (space != oldSpace &&
                 (space == null || space.board == this.board)) {
             this.space = space;
+            board.playerMoved(this, oldSpace, space);
             if (oldSpace != null) {
                 oldSpace.setPlayer(null);
             }
@@ -117,6 +124,7 @@ public class Player extends Subject {
 
     public void setHeading(@NotNull Heading heading) {
         if (heading != this.heading) {
+            board.playerTurned(this, this.heading, heading);
             this.heading = heading;
             notifyChange();
             if (space != null) {
@@ -125,6 +133,47 @@ public class Player extends Subject {
         }
     }
 
+    /**
+     * Returns the number of the last checkpoint reached by this player;
+     * the checkpoints must be reached in the order of their numbers,
+     * starting with 1.
+     *
+     * @return the number of the last checkpoint reached, 0 if none
+     */
+    public int getLastCheckpoint() {
+        return lastCheckpoint;
+    }
+
+    public void setLastCheckpoint(int lastCheckpoint) {
+        if (lastCheckpoint != this.lastCheckpoint) {
+            board.playerReachedCheckpoint(this, this.lastCheckpoint, lastCheckpoint);
+            this.lastCheckpoint = lastCheckpoint;
+            notifyChange();
+        }
+    }
+
+    /**
+     * Returns the damage this player took, e.g. from lasers.
+     *
+     * @return the damage of this player
+     */
+    public int getDamage() {
+        return damage;
+    }
+
+    public void setDamage(int damage) {
+        if (damage != this.damage) {
+            board.playerDamaged(this, this.damage, damage);
+            this.damage = damage;
+            notifyChange();
+        }
+    }
+
+    @Override
+    protected boolean isNotificationEnabled() {
+        return board.isNotificationEnabled();
+    }
+
     public CommandCardField getProgramField(int i) {
         return program[i];
     }
@@ -133,4 +182,15 @@ public class Player extends Subject {
         return cards[i];
     }
 
+    /**
+     * Returns the deck of this player, from which the cards of the player
+     * are dealt. Note that the deck is not observable; it is changed by
+     * the game controller only.
+     *
+     * @return the deck of this player
+     */
+    public CommandDeck getDeck() {
+        return deck;
+    }
+
 }
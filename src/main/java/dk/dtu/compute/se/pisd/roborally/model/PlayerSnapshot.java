@@ -0,0 +1,179 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.model;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An immutable snapshot of the state of a player: its name and color, its
+ * position and heading, the last checkpoint it reached, its damage, and
+ * the cards in its program and card fields.
+ * Snapshots are created as part of a {@link BoardSnapshot}; a player
+ * snapshot is reused by the next board snapshot as long as the player
+ * does not change.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public final class PlayerSnapshot {
+
+    public final String name;
+
+    public final String color;
+
+    /**
+     * The coordinates of the player's space; -1 if the player is not on the board.
+     */
+    public final int x;
+    public final int y;
+
+    public final Heading heading;
+
+    public final int lastCheckpoint;
+
+    public final int damage;
+
+    private final CommandCard[] program;
+    private final CommandCard[] cards;
+
+    // bit i is set if program field (resp. card field) i is visible
+    private final int programVisible;
+    private final int cardsVisible;
+
+    private PlayerSnapshot(@NotNull Player player) {
+        this.name = player.getName();
+        this.color = player.getColor();
+        Space space = player.getSpace();
+        this.x = space != null ? space.x : -1;
+        this.y = space != null ? space.y : -1;
+        this.heading = player.getHeading();
+        this.lastCheckpoint = player.getLastCheckpoint();
+        this.damage = player.getDamage();
+
+        program = new CommandCard[Player.NO_REGISTERS];
+        int visible = 0;
+        for (int i = 0; i < Player.NO_REGISTERS; i++) {
+            CommandCardField field = player.getProgramField(i);
+            program[i] = field.getCard();
+            if (field.isVisible()) {
+                visible |= 1 << i;
+            }
+        }
+        programVisible = visible;
+
+        cards = new CommandCard[Player.NO_CARDS];
+        visible = 0;
+        for (int i = 0; i < Player.NO_CARDS; i++) {
+            CommandCardField field = player.getCardField(i);
+            cards[i] = field.getCard();
+            if (field.isVisible()) {
+                visible |= 1 << i;
+            }
+        }
+        cardsVisible = visible;
+    }
+
+    /**
+     * Returns a snapshot of the given player. If the given previous snapshot
+     * still represents the state of the player, this previous snapshot is
+     * returned instead of a new one.
+     *
+     * @param player the player
+     * @param previous a previous snapshot of the player (or null)
+     * @return a snapshot of the current state of the player
+     */
+    static PlayerSnapshot of(@NotNull Player player, PlayerSnapshot previous) {
+        if (previous != null && previous.represents(player)) {
+            return previous;
+        }
+        return new PlayerSnapshot(player);
+    }
+
+    private boolean represents(@NotNull Player player) {
+        Space space = player.getSpace();
+        if (heading != player.getHeading() || lastCheckpoint != player.getLastCheckpoint() ||
+                damage != player.getDamage() ||
+                (space == null ? x != -1 : (space.x != x || space.y != y)) ||
+                !name.equals(player.getName()) ||
+                (color == null ? player.getColor() != null : !color.equals(player.getColor()))) {
+            return false;
+        }
+        for (int i = 0; i < Player.NO_REGISTERS; i++) {
+            CommandCardField field = player.getProgramField(i);
+            if (program[i] != field.getCard() || isProgramFieldVisible(i) != field.isVisible()) {
+                return false;
+            }
+        }
+        for (int i = 0; i < Player.NO_CARDS; i++) {
+            CommandCardField field = player.getCardField(i);
+            if (cards[i] != field.getCard() || isCardFieldVisible(i) != field.isVisible()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public CommandCard getProgramCard(int i) {
+        return program[i];
+    }
+
+    public boolean isProgramFieldVisible(int i) {
+        return (programVisible & (1 << i)) != 0;
+    }
+
+    public CommandCard getCard(int i) {
+        return cards[i];
+    }
+
+    public boolean isCardFieldVisible(int i) {
+        return (cardsVisible & (1 << i)) != 0;
+    }
+
+    /**
+     * Creates a new player on the given board with the state of this
+     * snapshot. The player is not added to the board.
+     *
+     * @param board the board of the new player
+     * @return the new player
+     */
+    Player toPlayer(@NotNull Board board) {
+        Player player = new Player(board, color, name);
+        player.setHeading(heading);
+        player.setLastCheckpoint(lastCheckpoint);
+        player.setDamage(damage);
+        if (x >= 0) {
+            player.setSpace(board.getSpace(x, y));
+        }
+        for (int i = 0; i < Player.NO_REGISTERS; i++) {
+            CommandCardField field = player.getProgramField(i);
+            field.setCard(program[i]);
+            field.setVisible(isProgramFieldVisible(i));
+        }
+        for (int i = 0; i < Player.NO_CARDS; i++) {
+            CommandCardField field = player.getCardField(i);
+            field.setCard(cards[i]);
+            field.setVisible(isCardFieldVisible(i));
+        }
+        return player;
+    }
+
+}
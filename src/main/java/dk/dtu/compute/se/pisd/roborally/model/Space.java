@@ -22,6 +22,12 @@
 package dk.dtu.compute.se.pisd.roborally.model;
 
 import dk.dtu.compute.se.pisd.designpatterns.observer.Subject;
+import dk.dtu.compute.se.pisd.roborally.controller.FieldAction;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * ...
@@ -38,6 +44,11 @@ public class Space extends Subject {
 
     private Player player;
 
+    // bit h is set if there is a wall on the side of the space with heading h
+    private int walls = 0;
+
+    private List<FieldAction> actions = Collections.emptyList();
+
     public Space(Board board, int x, int y) {
         this.board = board;
         this.x = x;
@@ -65,6 +76,79 @@ public class Space extends Subject {
         }
     }
 
+    /**
+     * Returns the headings of the sides of this space, which have a wall.
+     *
+     * @return the headings of the walls of this space
+     */
+    public List<Heading> getWalls() {
+        List<Heading> result = new ArrayList<>();
+        for (Heading heading: Heading.values()) {
+            if (hasWall(heading)) {
+                result.add(heading);
+            }
+        }
+        return result;
+    }
+
+    public boolean hasWall(@NotNull Heading heading) {
+        return (walls & (1 << heading.ordinal())) != 0;
+    }
+
+    /**
+     * Adds a wall on the given side of this space. Walls and actions are part
+     * of the layout of the board, which should be set up before the game starts.
+     *
+     * @param heading the side of the space
+     */
+    public void addWall(@NotNull Heading heading) {
+        if (!hasWall(heading)) {
+            boolean first = walls == 0 && actions.isEmpty();
+            walls |= 1 << heading.ordinal();
+            board.wallAdded(this, heading, first);
+            notifyChange();
+        }
+    }
+
+    /**
+     * Returns the actions of this space (e.g. a conveyor belt), which are
+     * executed for the player on this space in the activation phase.
+     *
+     * @return the unmodifiable list of the actions of this space
+     */
+    public List<FieldAction> getActions() {
+        return actions;
+    }
+
+    /**
+     * Adds an action to this space. Walls and actions are part of the layout
+     * of the board, which should be set up before the game starts.
+     *
+     * @param action the action
+     */
+    public void addAction(@NotNull FieldAction action) {
+        boolean first = walls == 0 && actions.isEmpty();
+        boolean firstOfType = true;
+        for (FieldAction other: actions) {
+            if (other.getClass() == action.getClass()) {
+                firstOfType = false;
+            }
+        }
+        List<FieldAction> newActions = new ArrayList<>(actions.size() + 1);
+        newActions.addAll(actions);
+        newActions.add(action);
+        // the list is replaced as a whole, so that the list returned by
+        // getActions() never changes
+        actions = Collections.unmodifiableList(newActions);
+        board.actionAdded(this, action, first, firstOfType);
+        notifyChange();
+    }
+
+    @Override
+    protected boolean isNotificationEnabled() {
+        return board.isNotificationEnabled();
+    }
+
     void playerChanged() {
         // This is a minor hack; since some views that are registered with the space
         // also need to update when some player attributes change, the player can
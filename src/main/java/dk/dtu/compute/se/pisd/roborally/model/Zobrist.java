@@ -0,0 +1,107 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.model;
+
+/**
+ * The keys for the Zobrist hash of a board (see {@link Board#getHash()}).
+ * The hash of a board is the XOR of the keys of all the parts of its
+ * state, so that it can be updated incrementally when a single part
+ * changes. Instead of tables of random numbers, the keys are computed
+ * by a fixed mixing function; this way, the keys do not need any memory
+ * for large boards, and two boards in the same state have the same hash,
+ * even when they were created independently (e.g. in different runs).
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+final class Zobrist {
+
+    private static final long POSITION = 0x1L;
+    private static final long HEADING = 0x2L;
+    private static final long CURRENT_PLAYER = 0x3L;
+    private static final long STEP = 0x4L;
+    private static final long PHASE = 0x5L;
+    private static final long CHECKPOINT = 0x6L;
+    private static final long WALL = 0x7L;
+    private static final long ELEMENT = 0x8L;
+    private static final long DAMAGE = 0x9L;
+
+    private Zobrist() {
+    }
+
+    static long position(int playerNo, int x, int y) {
+        return mix(POSITION, playerNo, ((long) x << 32) | (y & 0xFFFFFFFFL));
+    }
+
+    static long heading(int playerNo, Heading heading) {
+        return mix(HEADING, playerNo, heading.ordinal());
+    }
+
+    static long currentPlayer(int playerNo) {
+        return mix(CURRENT_PLAYER, playerNo, 0);
+    }
+
+    static long step(int step) {
+        return mix(STEP, 0, step);
+    }
+
+    static long phase(Phase phase) {
+        return mix(PHASE, 0, phase.ordinal());
+    }
+
+    static long checkpoint(int playerNo, int checkpoint) {
+        return mix(CHECKPOINT, playerNo, checkpoint);
+    }
+
+    static long damage(int playerNo, int damage) {
+        return mix(DAMAGE, playerNo, damage);
+    }
+
+    static long wall(int x, int y, Heading heading) {
+        return mix(WALL, heading.ordinal(), ((long) x << 32) | (y & 0xFFFFFFFFL));
+    }
+
+    static long element(int x, int y, int element) {
+        // the hash of an element uses all 32 bits, so it is mixed in by a
+        // round of its own instead of taking the place of the player number
+        return splitMix(mix(ELEMENT, 0, ((long) x << 32) | (y & 0xFFFFFFFFL)) ^ (element & 0xFFFFFFFFL));
+    }
+
+    /**
+     * Computes the key of a part of the state. The kind occupies the top
+     * 8 bits and the player number (or another small index below 2^16)
+     * the next 16 bits of the first round, so that they cannot overlap.
+     */
+    private static long mix(long kind, int playerNo, long value) {
+        // the finaliser of the SplitMix64 generator applied twice, which
+        // spreads every input bit over all bits of the key
+        return splitMix(splitMix(kind << 56 ^ (playerNo & 0xFFFFL) << 40) ^ value);
+    }
+
+    private static long splitMix(long z) {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+}
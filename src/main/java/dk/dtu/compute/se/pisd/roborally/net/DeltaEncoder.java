@@ -0,0 +1,522 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.net;
+
+import dk.dtu.compute.se.pisd.designpatterns.observer.Observer;
+import dk.dtu.compute.se.pisd.designpatterns.observer.Subject;
+import dk.dtu.compute.se.pisd.roborally.controller.*;
+import dk.dtu.compute.se.pisd.roborally.model.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Encodes the changes of a board as a stream of small binary deltas. The
+ * encoder observes the board, its players and their command card fields,
+ * and remembers which of them notified a change. When a delta is encoded
+ * (typically after every step of the game), only the attributes of these
+ * subjects that actually differ from the state sent last are encoded.
+ * Spaces are not observed, since the only state of a space is its player,
+ * whose changes are covered by the position of the player.
+ *
+ * Every delta has a sequence number, which is one more than the sequence
+ * number of the delta before. A keyframe contains the complete state as of
+ * the last delta, and carries the sequence number of that delta; a client
+ * that starts with a keyframe can apply all deltas with higher sequence
+ * numbers. Keyframes are encoded from the state sent last (which the
+ * encoder remembers anyway), not from the board itself; this way, a
+ * keyframe is consistent with the stream of deltas, even if the board
+ * has changed since the last delta.
+ *
+ * The layout of the board (its walls and the built-in actions, see
+ * {@link #putLayout(ByteBuffer, Board)}) is part of every keyframe; since
+ * the layout does not change during a game, it is encoded only once.
+ *
+ * The encoder must be used by the thread which changes the board, and the
+ * notifications of the board must not be suppressed. All players must be
+ * added to the board and its layout must be complete before the encoder
+ * is created.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public class DeltaEncoder implements Observer {
+
+    static final byte BOARD = 1;
+    static final byte PLAYER = 2;
+    static final byte PLAYER_INFO = 3;
+    static final byte FIELD = 4;
+    static final byte CHECKPOINT = 5;
+    static final byte DAMAGE = 6;
+    static final byte ACTIVATION_ORDER = 7;
+
+    // the types of the actions in the layout of a keyframe
+    static final byte CONVEYOR_BELT = 1;
+    static final byte GEAR = 2;
+    static final byte PUSH_PANEL = 3;
+    static final byte CHECK_POINT = 4;
+    static final byte BOARD_LASER = 5;
+    static final byte PRIORITY_ANTENNA = 6;
+
+    static final int FIELDS = Player.NO_REGISTERS + Player.NO_CARDS;
+
+    final private Board board;
+
+    final private int keyframeInterval;
+
+    private int sequence = 0;
+
+    private int deltasSinceKeyframe = 0;
+
+    final private Map<Subject, Integer> indices = new IdentityHashMap<>();
+
+    final private Player[] players;
+
+    final private CommandCardField[] fields;
+
+    // the subjects which changed since the last delta; the indices of the
+    // changed players and fields are collected in the dirty lists
+
+    private boolean boardDirty = false;
+
+    final private boolean[] playerDirty;
+    final private int[] dirtyPlayers;
+    private int dirtyPlayersNumber = 0;
+
+    final private boolean[] fieldDirty;
+    final private int[] dirtyFields;
+    private int dirtyFieldsNumber = 0;
+
+    // the state as sent by the last delta
+
+    private Phase phase;
+    private int step;
+    private int currentPlayer;
+    private boolean stepMode;
+    private int[] activationOrder;
+
+    final private String[] names;
+    final private String[] colors;
+    final private int[] xs;
+    final private int[] ys;
+    final private Heading[] headings;
+    final private int[] checkpoints;
+    final private int[] damages;
+
+    final private CommandCard[] cards;
+    final private boolean[] visible;
+
+    final private ByteBuffer layout;
+
+    private ByteBuffer scratch = ByteBuffer.allocate(256);
+
+    /**
+     * Creates an encoder for the given board, which starts observing the
+     * board right away. The initial state of the board is the state of
+     * the keyframe with sequence number 0.
+     *
+     * @param board the board
+     * @param keyframeInterval the number of deltas after which a new keyframe is due
+     */
+    public DeltaEncoder(@NotNull Board board, int keyframeInterval) {
+        this.board = board;
+        this.keyframeInterval = keyframeInterval;
+
+        int playersNumber = board.getPlayersNumber();
+        players = new Player[playersNumber];
+        fields = new CommandCardField[playersNumber * FIELDS];
+        playerDirty = new boolean[playersNumber];
+        dirtyPlayers = new int[playersNumber];
+        fieldDirty = new boolean[fields.length];
+        dirtyFields = new int[fields.length];
+        names = new String[playersNumber];
+        colors = new String[playersNumber];
+        xs = new int[playersNumber];
+        ys = new int[playersNumber];
+        headings = new Heading[playersNumber];
+        checkpoints = new int[playersNumber];
+        damages = new int[playersNumber];
+        cards = new CommandCard[fields.length];
+        visible = new boolean[fields.length];
+
+        phase = board.getPhase();
+        step = board.getStep();
+        currentPlayer = currentPlayerNumber();
+        stepMode = board.isStepMode();
+        activationOrder = board.getActivationOrder();
+        layout = ByteBuffer.allocate(layoutSize(board));
+        putLayout(layout, board);
+        layout.flip();
+        board.attach(this);
+
+        for (int i = 0; i < playersNumber; i++) {
+            Player player = board.getPlayer(i);
+            players[i] = player;
+            indices.put(player, i);
+            names[i] = player.getName();
+            colors[i] = player.getColor();
+            Space space = player.getSpace();
+            xs[i] = space != null ? space.x : -1;
+            ys[i] = space != null ? space.y : -1;
+            headings[i] = player.getHeading();
+            checkpoints[i] = player.getLastCheckpoint();
+            damages[i] = player.getDamage();
+            player.attach(this);
+
+            for (int j = 0; j < FIELDS; j++) {
+                int index = i * FIELDS + j;
+                CommandCardField field = j < Player.NO_REGISTERS ?
+                        player.getProgramField(j) : player.getCardField(j - Player.NO_REGISTERS);
+                fields[index] = field;
+                indices.put(field, index);
+                cards[index] = field.getCard();
+                visible[index] = field.isVisible();
+                field.attach(this);
+            }
+        }
+    }
+
+    public Board getBoard() {
+        return board;
+    }
+
+    /**
+     * Stops observing the board, its players and their command card fields.
+     * The encoder must not be used anymore afterwards.
+     */
+    public void close() {
+        board.detach(this);
+        for (Player player: players) {
+            player.detach(this);
+        }
+        for (CommandCardField field: fields) {
+            field.detach(this);
+        }
+    }
+
+    /**
+     * @return the sequence number of the last delta
+     */
+    public int getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return true if the configured number of deltas were encoded since the last keyframe
+     */
+    public boolean isKeyframeDue() {
+        return deltasSinceKeyframe >= keyframeInterval;
+    }
+
+    @Override
+    public void update(Subject subject) {
+        if (subject == board) {
+            boardDirty = true;
+            return;
+        }
+        Integer index = indices.get(subject);
+        if (index != null) {
+            if (subject instanceof Player) {
+                if (!playerDirty[index]) {
+                    playerDirty[index] = true;
+                    dirtyPlayers[dirtyPlayersNumber++] = index;
+                }
+            } else if (!fieldDirty[index]) {
+                fieldDirty[index] = true;
+                dirtyFields[dirtyFieldsNumber++] = index;
+            }
+        }
+    }
+
+    /**
+     * Encodes the changes of the board since the last delta.
+     *
+     * @return the frame of the delta, or null if nothing changed
+     */
+    public ByteBuffer encodeDelta() {
+        ByteBuffer buffer = scratch(0);
+        buffer.putInt(sequence + 1);
+        int start = buffer.position();
+
+        if (boardDirty) {
+            boardDirty = false;
+            int current = currentPlayerNumber();
+            if (board.getPhase() != phase || board.getStep() != step ||
+                    current != currentPlayer || board.isStepMode() != stepMode) {
+                phase = board.getPhase();
+                step = board.getStep();
+                currentPlayer = current;
+                stepMode = board.isStepMode();
+                buffer = scratch(5);
+                buffer.put(BOARD);
+                putBoard(buffer, phase, step, currentPlayer, stepMode);
+            }
+            int[] order = board.getActivationOrder();
+            if (!Arrays.equals(order, activationOrder)) {
+                activationOrder = order;
+                buffer = scratch(2 + players.length);
+                buffer.put(ACTIVATION_ORDER);
+                putActivationOrder(buffer, activationOrder);
+            }
+        }
+
+        for (int n = 0; n < dirtyPlayersNumber; n++) {
+            int i = dirtyPlayers[n];
+            playerDirty[i] = false;
+            Player player = players[i];
+            if (!equals(names[i], player.getName()) || !equals(colors[i], player.getColor())) {
+                names[i] = player.getName();
+                colors[i] = player.getColor();
+                buffer = scratch(2 + Protocol.stringSize(names[i]) + Protocol.stringSize(colors[i]));
+                buffer.put(PLAYER_INFO);
+                buffer.put((byte) i);
+                Protocol.putString(buffer, names[i]);
+                Protocol.putString(buffer, colors[i]);
+            }
+            Space space = player.getSpace();
+            int x = space != null ? space.x : -1;
+            int y = space != null ? space.y : -1;
+            if (x != xs[i] || y != ys[i] || player.getHeading() != headings[i]) {
+                xs[i] = x;
+                ys[i] = y;
+                headings[i] = player.getHeading();
+                buffer = scratch(7);
+                buffer.put(PLAYER);
+                buffer.put((byte) i);
+                putPosition(buffer, x, y, headings[i]);
+            }
+            if (player.getLastCheckpoint() != checkpoints[i]) {
+                checkpoints[i] = player.getLastCheckpoint();
+                buffer = scratch(4);
+                buffer.put(CHECKPOINT);
+                buffer.put((byte) i);
+                buffer.putShort((short) checkpoints[i]);
+            }
+            if (player.getDamage() != damages[i]) {
+                damages[i] = player.getDamage();
+                buffer = scratch(4);
+                buffer.put(DAMAGE);
+                buffer.put((byte) i);
+                buffer.putShort((short) damages[i]);
+            }
+        }
+        dirtyPlayersNumber = 0;
+
+        for (int n = 0; n < dirtyFieldsNumber; n++) {
+            int index = dirtyFields[n];
+            fieldDirty[index] = false;
+            CommandCardField field = fields[index];
+            if (field.getCard() != cards[index] || field.isVisible() != visible[index]) {
+                cards[index] = field.getCard();
+                visible[index] = field.isVisible();
+                buffer = scratch(5);
+                buffer.put(FIELD);
+                buffer.put((byte) (index / FIELDS));
+                buffer.put((byte) (index % FIELDS));
+                putField(buffer, cards[index], visible[index]);
+            }
+        }
+        dirtyFieldsNumber = 0;
+
+        if (buffer.position() == start) {
+            return null;
+        }
+        sequence++;
+        deltasSinceKeyframe++;
+        return frame(Protocol.DELTA);
+    }
+
+    /**
+     * Encodes the complete state of the board as of the last delta.
+     *
+     * @return the frame of the keyframe
+     */
+    public ByteBuffer encodeKeyframe() {
+        scratch(0);
+        ByteBuffer buffer = scratch(4 + 4 + Protocol.stringSize(board.boardName) + 4 + 4 + 1);
+        buffer.putInt(sequence);
+        buffer.putShort((short) board.width);
+        buffer.putShort((short) board.height);
+        Protocol.putString(buffer, board.boardName);
+        Integer gameId = board.getGameId();
+        buffer.putInt(gameId != null ? gameId : -1);
+        putBoard(buffer, phase, step, currentPlayer, stepMode);
+        buffer = scratch(layout.remaining() + 1);
+        buffer.put(layout.duplicate());
+        buffer.put((byte) players.length);
+        for (int i = 0; i < players.length; i++) {
+            buffer = scratch(Protocol.stringSize(names[i]) + Protocol.stringSize(colors[i]) + 9 + 2 * FIELDS);
+            Protocol.putString(buffer, names[i]);
+            Protocol.putString(buffer, colors[i]);
+            putPosition(buffer, xs[i], ys[i], headings[i]);
+            buffer.putShort((short) checkpoints[i]);
+            buffer.putShort((short) damages[i]);
+            for (int j = 0; j < FIELDS; j++) {
+                putField(buffer, cards[i * FIELDS + j], visible[i * FIELDS + j]);
+            }
+        }
+        buffer = scratch(1 + players.length);
+        putActivationOrder(buffer, activationOrder);
+        deltasSinceKeyframe = 0;
+        return frame(Protocol.KEYFRAME);
+    }
+
+    private int currentPlayerNumber() {
+        Player current = board.getCurrentPlayer();
+        return current != null ? board.getPlayerNumber(current) : -1;
+    }
+
+    private static void putBoard(ByteBuffer buffer, Phase phase, int step, int currentPlayer, boolean stepMode) {
+        buffer.put((byte) phase.ordinal());
+        buffer.put((byte) step);
+        buffer.put((byte) currentPlayer);
+        buffer.put((byte) (stepMode ? 1 : 0));
+    }
+
+    /**
+     * Encodes the order in which the players are activated in the current
+     * register (see {@link Board#getActivationOrder()}): the number of
+     * players followed by their numbers in the order of activation (bytes),
+     * or {@link Protocol#NONE} if the players are activated in the order of
+     * their numbers.
+     */
+    private static void putActivationOrder(ByteBuffer buffer, int[] activationOrder) {
+        if (activationOrder == null) {
+            buffer.put(Protocol.NONE);
+        } else {
+            buffer.put((byte) activationOrder.length);
+            for (int playerNo: activationOrder) {
+                buffer.put((byte) playerNo);
+            }
+        }
+    }
+
+    /**
+     * Encodes the layout of the board: the number of spaces with walls or
+     * actions (int), and for each of these spaces its coordinates (short,
+     * short), its walls (byte, bit h for heading h), the number of its
+     * actions (byte) followed by the actions. An action is encoded by its
+     * type and its parameters: {@link #CONVEYOR_BELT} heading (byte),
+     * {@link #GEAR} clockwise (byte), {@link #PUSH_PANEL} heading (byte) and
+     * registers (int), {@link #CHECK_POINT} number (short),
+     * {@link #BOARD_LASER} heading (byte) or {@link #PRIORITY_ANTENNA}
+     * (without parameters). Other types
+     * of actions are not encoded.
+     */
+    private static void putLayout(ByteBuffer buffer, Board board) {
+        buffer.putInt(board.getLayoutSpaces().size());
+        for (Space space: board.getLayoutSpaces()) {
+            buffer.putShort((short) space.x);
+            buffer.putShort((short) space.y);
+            int walls = 0;
+            for (Heading heading: space.getWalls()) {
+                walls |= 1 << heading.ordinal();
+            }
+            buffer.put((byte) walls);
+            int position = buffer.position();
+            buffer.put((byte) 0);
+            int actions = 0;
+            for (FieldAction action: space.getActions()) {
+                if (putAction(buffer, action)) {
+                    actions++;
+                }
+            }
+            buffer.put(position, (byte) actions);
+        }
+    }
+
+    private static boolean putAction(ByteBuffer buffer, FieldAction action) {
+        if (action instanceof ConveyorBelt) {
+            buffer.put(CONVEYOR_BELT);
+            buffer.put((byte) ((ConveyorBelt) action).getHeading().ordinal());
+        } else if (action instanceof Gear) {
+            buffer.put(GEAR);
+            buffer.put((byte) (((Gear) action).isClockwise() ? 1 : 0));
+        } else if (action instanceof PushPanel) {
+            buffer.put(PUSH_PANEL);
+            buffer.put((byte) ((PushPanel) action).getHeading().ordinal());
+            buffer.putInt(((PushPanel) action).getRegisters());
+        } else if (action instanceof CheckPoint) {
+            buffer.put(CHECK_POINT);
+            buffer.putShort((short) ((CheckPoint) action).getNumber());
+        } else if (action instanceof BoardLaser) {
+            buffer.put(BOARD_LASER);
+            buffer.put((byte) ((BoardLaser) action).getHeading().ordinal());
+        } else if (action instanceof PriorityAntenna) {
+            buffer.put(PRIORITY_ANTENNA);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static int layoutSize(Board board) {
+        int size = 4;
+        for (Space space: board.getLayoutSpaces()) {
+            // an action takes at most 6 bytes
+            size += 6 + 6 * space.getActions().size();
+        }
+        return size;
+    }
+
+    private static void putPosition(ByteBuffer buffer, int x, int y, Heading heading) {
+        buffer.putShort((short) x);
+        buffer.putShort((short) y);
+        buffer.put((byte) heading.ordinal());
+    }
+
+    private static void putField(ByteBuffer buffer, CommandCard card, boolean visible) {
+        buffer.put(card != null ? (byte) card.command.ordinal() : Protocol.NONE);
+        buffer.put((byte) (visible ? 1 : 0));
+    }
+
+    private static boolean equals(String s1, String s2) {
+        return s1 == null ? s2 == null : s1.equals(s2);
+    }
+
+    /**
+     * Returns the scratch buffer with room for at least the given number
+     * of additional bytes. With a size of 0, the buffer is cleared first.
+     */
+    private ByteBuffer scratch(int size) {
+        if (size == 0) {
+            scratch.clear();
+        } else if (scratch.remaining() < size) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * scratch.capacity(), scratch.position() + size));
+            scratch.flip();
+            larger.put(scratch);
+            scratch = larger;
+        }
+        return scratch;
+    }
+
+    private ByteBuffer frame(byte type) {
+        scratch.flip();
+        ByteBuffer buffer = Protocol.startFrame(type, scratch.remaining());
+        buffer.put(scratch);
+        return Protocol.finishFrame(buffer);
+    }
+
+}
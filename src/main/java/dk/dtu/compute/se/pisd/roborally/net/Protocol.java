@@ -0,0 +1,198 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.net;
+
+import dk.dtu.compute.se.pisd.roborally.model.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The messages exchanged between the RoboRally game server and its
+ * clients. Every message is sent as a frame, which starts with the length
+ * of the rest of the frame (an int), followed by the type of the message
+ * (a byte) and the content of the message. All numbers are big-endian.
+ *
+ * Messages from a client to the server:
+ * <ul>
+ *     <li>{@link #JOIN}: game id (int), player number (byte)</li>
+ *     <li>{@link #PROGRAM}: for every register, the number of the card field
+ *         (byte), whose card should be moved to this register; -1 for
+ *         leaving the register empty</li>
+ *     <li>{@link #SPECTATE}: game id (int)</li>
+ *     <li>{@link #MATCH}: number of players (byte), board name (string),
+ *         player name (string); the client waits in the lobby of the server
+ *         until a game is formed, and then joins this game</li>
+ *     <li>{@link #CHOICE}: the number of the option (byte) chosen for the
+ *         interactive command card, whose execution is pending for the
+ *         player (see {@link dk.dtu.compute.se.pisd.roborally.model.Board#getPendingOptions()})</li>
+ * </ul>
+ *
+ * Messages from the server to a client:
+ * <ul>
+ *     <li>{@link #JOINED}: game id (int), player number (byte, -1 for a spectator)</li>
+ *     <li>{@link #ERROR}: message (string)</li>
+ *     <li>{@link #KEYFRAME}: sequence number (int) followed by the complete
+ *         state of the board (see {@link DeltaEncoder#encodeKeyframe()})</li>
+ *     <li>{@link #DELTA}: sequence number (int) followed by the changes of
+ *         the board since the previous delta (see {@link DeltaEncoder#encodeDelta()})</li>
+ * </ul>
+ *
+ * After joining or spectating a game, a client first receives a keyframe and then the
+ * deltas with the following sequence numbers, from which it can reconstruct
+ * the state of the board (see {@link StateDecoder}).
+ *
+ * Strings are encoded by their length in bytes (short, -1 for null)
+ * followed by their UTF-8 bytes.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public final class Protocol {
+
+    public static final int MAX_FRAME_LENGTH = 1 << 20;
+
+    public static final int LENGTH_SIZE = 4;
+
+    public static final byte JOIN = 1;
+    public static final byte PROGRAM = 2;
+    public static final byte SPECTATE = 3;
+    public static final byte MATCH = 4;
+    public static final byte CHOICE = 5;
+
+    public static final byte JOINED = 16;
+    public static final byte ERROR = 17;
+    public static final byte KEYFRAME = 18;
+    public static final byte DELTA = 19;
+
+    public static final byte NONE = -1;
+
+    private Protocol() {
+    }
+
+    /**
+     * Starts a new frame of the given type in a buffer, which has room
+     * for a content of at most the given size.
+     *
+     * @param type the type of the message
+     * @param capacity the maximum size of the content
+     * @return the buffer positioned after the type of the message
+     */
+    public static ByteBuffer startFrame(byte type, int capacity) {
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH_SIZE + 1 + capacity);
+        buffer.putInt(0);
+        buffer.put(type);
+        return buffer;
+    }
+
+    /**
+     * Finishes a frame started by {@link #startFrame(byte, int)}: writes
+     * its length and flips the buffer, so that it is ready for sending.
+     *
+     * @param buffer the buffer of the frame
+     * @return the buffer
+     */
+    public static ByteBuffer finishFrame(@NotNull ByteBuffer buffer) {
+        buffer.putInt(0, buffer.position() - LENGTH_SIZE);
+        buffer.flip();
+        return buffer;
+    }
+
+    public static ByteBuffer join(int gameId, int playerNo) {
+        ByteBuffer buffer = startFrame(JOIN, 5);
+        buffer.putInt(gameId);
+        buffer.put((byte) playerNo);
+        return finishFrame(buffer);
+    }
+
+    public static ByteBuffer spectate(int gameId) {
+        ByteBuffer buffer = startFrame(SPECTATE, 4);
+        buffer.putInt(gameId);
+        return finishFrame(buffer);
+    }
+
+    public static ByteBuffer match(int playersNumber, @NotNull String boardName, @NotNull String name) {
+        ByteBuffer buffer = startFrame(MATCH, 1 + stringSize(boardName) + stringSize(name));
+        buffer.put((byte) playersNumber);
+        putString(buffer, boardName);
+        putString(buffer, name);
+        return finishFrame(buffer);
+    }
+
+    public static ByteBuffer choice(int option) {
+        ByteBuffer buffer = startFrame(CHOICE, 1);
+        buffer.put((byte) option);
+        return finishFrame(buffer);
+    }
+
+    public static ByteBuffer joined(int gameId, int playerNo) {
+        ByteBuffer buffer = startFrame(JOINED, 5);
+        buffer.putInt(gameId);
+        buffer.put((byte) playerNo);
+        return finishFrame(buffer);
+    }
+
+    /**
+     * @param cards for every register, the number of the card field whose card
+     *              should be moved there; {@link #NONE} for no card
+     * @return the frame of the message
+     */
+    public static ByteBuffer program(@NotNull int[] cards) {
+        ByteBuffer buffer = startFrame(PROGRAM, Player.NO_REGISTERS);
+        for (int i = 0; i < Player.NO_REGISTERS; i++) {
+            buffer.put(i < cards.length ? (byte) cards[i] : NONE);
+        }
+        return finishFrame(buffer);
+    }
+
+    public static ByteBuffer error(@NotNull String message) {
+        ByteBuffer buffer = startFrame(ERROR, stringSize(message));
+        putString(buffer, message);
+        return finishFrame(buffer);
+    }
+
+    public static int stringSize(String string) {
+        return 2 + (string != null ? string.getBytes(StandardCharsets.UTF_8).length : 0);
+    }
+
+    public static void putString(@NotNull ByteBuffer buffer, String string) {
+        if (string == null) {
+            buffer.putShort((short) -1);
+        } else {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    public static String getString(@NotNull ByteBuffer buffer) {
+        int length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
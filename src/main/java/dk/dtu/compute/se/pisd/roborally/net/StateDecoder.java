@@ -0,0 +1,254 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.net;
+
+import dk.dtu.compute.se.pisd.roborally.controller.*;
+import dk.dtu.compute.se.pisd.roborally.model.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reconstructs the state of a board on the client side from the keyframes
+ * and deltas encoded by a {@link DeltaEncoder}. The decoder creates a new
+ * board for every keyframe it receives, and applies the deltas to this
+ * board; the board can be observed by views as usual (note that the board
+ * is replaced by the next keyframe, though).
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public class StateDecoder {
+
+    // since command cards do not have state, one card for every command suffices
+    private static final CommandCard[] CARDS = new CommandCard[Command.values().length];
+    static {
+        for (Command command: Command.values()) {
+            CARDS[command.ordinal()] = new CommandCard(command);
+        }
+    }
+
+    private Board board;
+
+    private int sequence = -1;
+
+    public Board getBoard() {
+        return board;
+    }
+
+    /**
+     * @return the sequence number of the last keyframe or delta applied
+     */
+    public int getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Applies a keyframe or a delta to the state. Deltas, which are older
+     * than the current state, are ignored.
+     *
+     * @param frame the frame positioned at the type of the message
+     * @return true if the frame was a keyframe or delta and applied to the state
+     * @throws IllegalStateException if a delta is missing or no keyframe was received yet
+     */
+    public boolean apply(@NotNull ByteBuffer frame) {
+        byte type = frame.get();
+        if (type == Protocol.KEYFRAME) {
+            applyKeyframe(frame);
+            return true;
+        } else if (type == Protocol.DELTA) {
+            return applyDelta(frame);
+        }
+        return false;
+    }
+
+    private void applyKeyframe(ByteBuffer frame) {
+        int sequence = frame.getInt();
+        int width = frame.getShort();
+        int height = frame.getShort();
+        String boardName = Protocol.getString(frame);
+        Board board = new Board(width, height, boardName);
+        int gameId = frame.getInt();
+        if (gameId >= 0) {
+            board.setGameId(gameId);
+        }
+        Phase phase = Phase.values()[frame.get()];
+        int step = frame.get();
+        int current = frame.get();
+        boolean stepMode = frame.get() != 0;
+        applyLayout(frame, board);
+        int players = frame.get();
+        for (int i = 0; i < players; i++) {
+            String name = Protocol.getString(frame);
+            String color = Protocol.getString(frame);
+            Player player = new Player(board, color, name);
+            board.addPlayer(player);
+            applyPosition(frame, player);
+            player.setLastCheckpoint(frame.getShort());
+            player.setDamage(frame.getShort());
+            for (int j = 0; j < DeltaEncoder.FIELDS; j++) {
+                applyField(frame, field(player, j));
+            }
+        }
+        // keyframes of files saved before the activation order was
+        // encoded end after the players
+        if (frame.hasRemaining()) {
+            board.setActivationOrder(getActivationOrder(frame));
+        }
+        board.setCurrentPlayer(board.getPlayer(current));
+        board.setPhase(phase);
+        board.setStep(step);
+        board.setStepMode(stepMode);
+        this.board = board;
+        this.sequence = sequence;
+    }
+
+    private boolean applyDelta(ByteBuffer frame) {
+        int sequence = frame.getInt();
+        if (board == null) {
+            throw new IllegalStateException("Delta " + sequence + " received before a keyframe");
+        }
+        if (sequence <= this.sequence) {
+            return false;
+        }
+        if (sequence != this.sequence + 1) {
+            throw new IllegalStateException("Delta " + (this.sequence + 1) + " is missing");
+        }
+        while (frame.hasRemaining()) {
+            byte op = frame.get();
+            switch (op) {
+                case DeltaEncoder.BOARD:
+                    Phase phase = Phase.values()[frame.get()];
+                    int step = frame.get();
+                    int current = frame.get();
+                    boolean stepMode = frame.get() != 0;
+                    board.setPhase(phase);
+                    board.setStep(step);
+                    board.setCurrentPlayer(board.getPlayer(current));
+                    board.setStepMode(stepMode);
+                    break;
+                case DeltaEncoder.PLAYER:
+                    applyPosition(frame, board.getPlayer(frame.get()));
+                    break;
+                case DeltaEncoder.PLAYER_INFO:
+                    Player player = board.getPlayer(frame.get());
+                    player.setName(Protocol.getString(frame));
+                    player.setColor(Protocol.getString(frame));
+                    break;
+                case DeltaEncoder.CHECKPOINT:
+                    board.getPlayer(frame.get()).setLastCheckpoint(frame.getShort());
+                    break;
+                case DeltaEncoder.DAMAGE:
+                    board.getPlayer(frame.get()).setDamage(frame.getShort());
+                    break;
+                case DeltaEncoder.ACTIVATION_ORDER:
+                    board.setActivationOrder(getActivationOrder(frame));
+                    break;
+                case DeltaEncoder.FIELD:
+                    Player owner = board.getPlayer(frame.get());
+                    applyField(frame, field(owner, frame.get()));
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown operation " + op + " in delta " + sequence);
+            }
+        }
+        this.sequence = sequence;
+        return true;
+    }
+
+    private static int[] getActivationOrder(ByteBuffer frame) {
+        int length = frame.get();
+        if (length < 0) {
+            return null;
+        }
+        int[] activationOrder = new int[length];
+        for (int i = 0; i < length; i++) {
+            activationOrder[i] = frame.get();
+        }
+        return activationOrder;
+    }
+
+    private void applyLayout(ByteBuffer frame, Board board) {
+        int spaces = frame.getInt();
+        for (int i = 0; i < spaces; i++) {
+            Space space = board.getSpace(frame.getShort(), frame.getShort());
+            int walls = frame.get();
+            for (Heading heading: Heading.values()) {
+                if ((walls & (1 << heading.ordinal())) != 0) {
+                    space.addWall(heading);
+                }
+            }
+            int actions = frame.get();
+            for (int j = 0; j < actions; j++) {
+                space.addAction(getAction(frame));
+            }
+        }
+    }
+
+    private static FieldAction getAction(ByteBuffer frame) {
+        byte type = frame.get();
+        switch (type) {
+            case DeltaEncoder.CONVEYOR_BELT:
+                return new ConveyorBelt(Heading.values()[frame.get()]);
+            case DeltaEncoder.GEAR:
+                return new Gear(frame.get() != 0);
+            case DeltaEncoder.PUSH_PANEL:
+                Heading heading = Heading.values()[frame.get()];
+                int registers = frame.getInt();
+                int[] active = new int[Integer.bitCount(registers)];
+                for (int i = 0, n = 0; i < 32; i++) {
+                    if ((registers & (1 << i)) != 0) {
+                        active[n++] = i;
+                    }
+                }
+                return new PushPanel(heading, active);
+            case DeltaEncoder.CHECK_POINT:
+                return new CheckPoint(frame.getShort());
+            case DeltaEncoder.BOARD_LASER:
+                return new BoardLaser(Heading.values()[frame.get()]);
+            case DeltaEncoder.PRIORITY_ANTENNA:
+                return new PriorityAntenna();
+            default:
+                throw new IllegalStateException("Unknown action " + type + " in keyframe");
+        }
+    }
+
+    private void applyPosition(ByteBuffer frame, Player player) {
+        int x = frame.getShort();
+        int y = frame.getShort();
+        Heading heading = Heading.values()[frame.get()];
+        player.setSpace(x >= 0 ? player.board.getSpace(x, y) : null);
+        player.setHeading(heading);
+    }
+
+    private void applyField(ByteBuffer frame, CommandCardField field) {
+        int command = frame.get();
+        field.setCard(command >= 0 ? CARDS[command] : null);
+        field.setVisible(frame.get() != 0);
+    }
+
+    private static CommandCardField field(Player player, int index) {
+        return index < Player.NO_REGISTERS ?
+                player.getProgramField(index) : player.getCardField(index - Player.NO_REGISTERS);
+    }
+
+}
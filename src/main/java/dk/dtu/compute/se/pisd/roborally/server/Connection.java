@@ -0,0 +1,229 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.server;
+
+import dk.dtu.compute.se.pisd.roborally.net.Protocol;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The connection of a client to the {@link GameServer}. A connection is
+ * used by the selector thread of the server only.
+ *
+ * The frames sent to a connection are often shared with many other
+ * connections (e.g. the deltas of a game with many spectators); every
+ * connection gets its own read-only view of the shared buffer, so that
+ * the content is neither encoded nor copied per connection. The queued
+ * frames are written to the channel by a single gathering write.
+ *
+ * The server limits the number of bytes queued for a connection (see
+ * {@link #getQueuedBytes()}). When a client does not read its data fast
+ * enough, the server drops the deltas and keyframes queued for it (see
+ * {@link #dropStateFrames()}) and sends a fresh keyframe instead.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+class Connection {
+
+    private static final int INITIAL_READ_BUFFER_SIZE = 1024;
+
+    private static final int MAX_GATHERED_FRAMES = 64;
+
+    final SocketChannel channel;
+
+    final SelectionKey key;
+
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+
+    final private Queue<ByteBuffer> outbound = new ArrayDeque<>();
+
+    final private ByteBuffer[] gathered = new ByteBuffer[MAX_GATHERED_FRAMES];
+
+    final private ServerMetrics metrics;
+
+    private long queuedBytes = 0;
+
+    ServedGame game;
+
+    int playerNo = -1;
+
+    boolean joining = false;
+
+    // the ticket of the client while it waits in the lobby for a match
+    CompletableFuture<Lobby.Seat> ticket;
+
+    // true while the connection has fallen behind and waits for a fresh keyframe
+    boolean awaitingKeyframe = false;
+
+    Connection(@NotNull SocketChannel channel, @NotNull SelectionKey key, @NotNull ServerMetrics metrics) {
+        this.channel = channel;
+        this.key = key;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Reads the data available from the channel into the read buffer;
+     * the complete frames read so far are obtained by {@link #nextFrame()}.
+     *
+     * @return false if the channel was closed by the client
+     * @throws IOException if reading fails
+     */
+    boolean read() throws IOException {
+        return channel.read(readBuffer) >= 0;
+    }
+
+    /**
+     * Returns the next complete frame read from the channel, positioned
+     * at the type of the message; the frame is only valid until the next
+     * call of this method or of {@link #read()}.
+     *
+     * @return the next frame, or null if no complete frame was read yet
+     * @throws IOException if the client sends a frame which is too long or empty
+     */
+    ByteBuffer nextFrame() throws IOException {
+        if (readBuffer.position() < Protocol.LENGTH_SIZE) {
+            return null;
+        }
+        int length = readBuffer.getInt(0);
+        if (length <= 0 || length > Protocol.MAX_FRAME_LENGTH) {
+            throw new IOException("Illegal frame length " + length);
+        }
+        int end = Protocol.LENGTH_SIZE + length;
+        if (readBuffer.position() < end) {
+            if (end > readBuffer.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(end);
+                readBuffer.flip();
+                larger.put(readBuffer);
+                readBuffer = larger;
+            }
+            return null;
+        }
+        ByteBuffer frame = ByteBuffer.allocate(length);
+        frame.put(readBuffer.array(), Protocol.LENGTH_SIZE, length);
+        frame.flip();
+        // move the rest of the data to the beginning of the buffer
+        readBuffer.flip();
+        readBuffer.position(end);
+        readBuffer.compact();
+        return frame;
+    }
+
+    /**
+     * Queues a frame for sending. The frame may be shared with other
+     * connections; it is not changed by this connection.
+     *
+     * @param frame the frame
+     */
+    void send(@NotNull ByteBuffer frame) {
+        if (key.isValid()) {
+            outbound.add(frame.duplicate());
+            queuedBytes += frame.remaining();
+            metrics.queued(frame.remaining(), queuedBytes);
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * @return the number of bytes queued for sending
+     */
+    long getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    /**
+     * Removes all deltas and keyframes from the queue of outbound frames,
+     * except for a frame which is partially written already.
+     */
+    void dropStateFrames() {
+        int frames = 0;
+        long bytes = 0;
+        Iterator<ByteBuffer> iterator = outbound.iterator();
+        while (iterator.hasNext()) {
+            ByteBuffer frame = iterator.next();
+            byte type = frame.get(Protocol.LENGTH_SIZE);
+            if (frame.position() == 0 && (type == Protocol.DELTA || type == Protocol.KEYFRAME)) {
+                iterator.remove();
+                frames++;
+                bytes += frame.remaining();
+            }
+        }
+        queuedBytes -= bytes;
+        metrics.dropped(frames, bytes);
+    }
+
+    /**
+     * Writes as much of the outbound data to the channel as the channel
+     * accepts without blocking.
+     *
+     * @throws IOException if writing fails
+     */
+    void flush() throws IOException {
+        while (!outbound.isEmpty()) {
+            int n = 0;
+            long length = 0;
+            for (ByteBuffer buffer: outbound) {
+                gathered[n++] = buffer;
+                length += buffer.remaining();
+                if (n == gathered.length) {
+                    break;
+                }
+            }
+            long written = channel.write(gathered, 0, n);
+            Arrays.fill(gathered, 0, n, null);
+            int frames = 0;
+            while (!outbound.isEmpty() && !outbound.peek().hasRemaining()) {
+                outbound.poll();
+                frames++;
+            }
+            queuedBytes -= written;
+            metrics.written(frames, written);
+            if (written < length) {
+                // the channel did not accept all data; wait until it is writable again
+                return;
+            }
+        }
+        key.interestOps(SelectionKey.OP_READ);
+    }
+
+    void close() {
+        metrics.discarded(outbound.size(), queuedBytes);
+        outbound.clear();
+        queuedBytes = 0;
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nothing to do, the connection is gone anyway
+        }
+    }
+
+}
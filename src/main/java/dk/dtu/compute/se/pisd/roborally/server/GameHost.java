@@ -0,0 +1,142 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.server;
+
+import dk.dtu.compute.se.pisd.roborally.controller.GameController;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hosts many games in one JVM. The games do not have threads of their
+ * own; all of them share a small, fixed pool of threads (by default one
+ * per processor). Every game processes the tasks submitted to it one after
+ * the other (see {@link HostedGame}), so the model of a game is only ever
+ * changed by one thread at a time, while different games run in parallel
+ * on the threads of the pool.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public class GameHost {
+
+    final private ScheduledExecutorService scheduler;
+
+    final private Map<Integer, HostedGame> games = new ConcurrentHashMap<>();
+
+    final private AtomicInteger nextGameId = new AtomicInteger(1);
+
+    public GameHost() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a game host, whose games share the given number of threads.
+     *
+     * @param threads the number of threads of the host
+     */
+    public GameHost(int threads) {
+        ThreadFactory threadFactory = new ThreadFactory() {
+            final private AtomicInteger number = new AtomicInteger(1);
+            final private ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+
+            @Override
+            public Thread newThread(@NotNull Runnable runnable) {
+                Thread thread = defaultFactory.newThread(runnable);
+                thread.setName("game-host-" + number.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threads, threadFactory);
+        executor.setRemoveOnCancelPolicy(true);
+        this.scheduler = executor;
+    }
+
+    /**
+     * Adds a game to this host. From now on, the game should be changed
+     * by tasks submitted to the returned hosted game only.
+     *
+     * @param gameController the controller of the game
+     * @return the hosted game
+     */
+    public HostedGame host(@NotNull GameController gameController) {
+        int id = nextGameId.getAndIncrement();
+        HostedGame game = new HostedGame(this, id, gameController);
+        games.put(id, game);
+        return game;
+    }
+
+    public HostedGame getGame(int id) {
+        return games.get(id);
+    }
+
+    public Collection<HostedGame> getGames() {
+        return Collections.unmodifiableCollection(games.values());
+    }
+
+    public int getGamesNumber() {
+        return games.size();
+    }
+
+    /**
+     * Removes the game from this host; tasks which are already submitted to
+     * the game will still be executed, but no new tasks are accepted.
+     *
+     * @param game the game to be removed
+     */
+    public void remove(@NotNull HostedGame game) {
+        if (games.remove(game.id, game)) {
+            game.close();
+        }
+    }
+
+    /**
+     * Stops the threads of this host. Tasks that are not yet executed
+     * will be discarded.
+     */
+    public void shutdown() {
+        for (HostedGame game: games.values()) {
+            game.close();
+        }
+        games.clear();
+        scheduler.shutdownNow();
+    }
+
+    public boolean awaitTermination(long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+        return scheduler.awaitTermination(timeout, unit);
+    }
+
+    ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+}
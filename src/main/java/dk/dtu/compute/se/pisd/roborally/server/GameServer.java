@@ -0,0 +1,645 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.server;
+
+import dk.dtu.compute.se.pisd.roborally.controller.GameController;
+import dk.dtu.compute.se.pisd.roborally.model.Board;
+import dk.dtu.compute.se.pisd.roborally.model.Command;
+import dk.dtu.compute.se.pisd.roborally.model.Phase;
+import dk.dtu.compute.se.pisd.roborally.model.Player;
+import dk.dtu.compute.se.pisd.roborally.net.DeltaEncoder;
+import dk.dtu.compute.se.pisd.roborally.net.Protocol;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A headless server, which lets remote clients play the games of a
+ * {@link GameHost}. The server uses non-blocking channels and a single
+ * selector thread for all its connections; the games themselves are
+ * executed by the threads of the game host. The results computed by the
+ * games are handed back to the selector thread, which sends them to the
+ * clients. The messages are defined in {@link Protocol}.
+ *
+ * A client joins a game as one of its players. In the programming phase,
+ * every client sends the program of its player; when the programs of all
+ * players of the game have arrived, the programs are executed. The changes
+ * of the game are sent to all clients of the game as deltas (see
+ * {@link DeltaEncoder}), one after every step; a client joining a game
+ * receives the last keyframe of the game and the deltas sent after it.
+ * Clients can also join a game as spectators, who receive the same
+ * keyframes and deltas as the players, but cannot send programs.
+ * Instead of joining a given game, a client can also ask for a match:
+ * the client then waits in the {@link Lobby} of the server, until there
+ * are enough players for a new game, and joins this game.
+ *
+ * Every keyframe and delta of a game is encoded exactly once, and the
+ * resulting read-only buffer is shared by all connections of the game
+ * (see {@link Connection}); so the cost of encoding does not depend on
+ * the number of players and spectators of a game.
+ *
+ * The number of bytes queued for a connection is bounded. When a client
+ * falls behind, so that a new delta would exceed this bound, the deltas
+ * queued for this client are dropped and replaced by a fresh keyframe,
+ * which brings the client up to date at once. The sizes of the queues
+ * and the number of these collapses are reported by {@link #getMetrics()}.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public class GameServer implements AutoCloseable {
+
+    private static final int KEYFRAME_INTERVAL = 64;
+
+    public static final int DEFAULT_MAX_QUEUED_BYTES = 256 * 1024;
+
+    final private GameHost host;
+
+    final private Lobby lobby;
+
+    final private int maxQueuedBytes;
+
+    final private ServerMetrics metrics = new ServerMetrics();
+
+    final private Selector selector;
+
+    private ServerSocketChannel serverChannel;
+
+    private Thread thread;
+
+    private volatile boolean running = false;
+
+    // tasks which must be executed by the selector thread
+    final private Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+
+    // the games which were joined by some client
+    final private Map<Integer, ServedGame> games = new HashMap<>();
+
+    public GameServer(@NotNull GameHost host) throws IOException {
+        this(host, DEFAULT_MAX_QUEUED_BYTES);
+    }
+
+    /**
+     * Creates a server for the games of the given host.
+     *
+     * @param host the game host
+     * @param maxQueuedBytes the maximum number of bytes queued for a connection
+     *                       before its deltas are collapsed into a keyframe
+     * @throws IOException if the selector cannot be opened
+     */
+    public GameServer(@NotNull GameHost host, int maxQueuedBytes) throws IOException {
+        this.host = host;
+        this.lobby = new Lobby(host);
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.selector = Selector.open();
+    }
+
+    public Lobby getLobby() {
+        return lobby;
+    }
+
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Starts the server on the given port of the loopback address.
+     *
+     * @param port the port; 0 for any free port
+     * @throws IOException if the server cannot be started
+     */
+    public void start(int port) throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        thread = new Thread(this::run, "game-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return the number of games, which clients joined and which did not end yet
+     */
+    int getServedGamesNumber() {
+        synchronized (games) {
+            return games.size();
+        }
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (SelectionKey key: selector.keys()) {
+            if (key.attachment() instanceof Connection) {
+                ((Connection) key.attachment()).close();
+            }
+        }
+        List<ServedGame> servedGames;
+        synchronized (games) {
+            servedGames = new ArrayList<>(games.values());
+            games.clear();
+        }
+        for (ServedGame served: servedGames) {
+            release(served);
+        }
+        selector.close();
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                Runnable task;
+                while ((task = pending.poll()) != null) {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        // a failing task must not stop the server; it
+                        // concerns a single connection or game only
+                        metrics.failedTask();
+                    }
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                read(connection);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.flush();
+                            }
+                        } catch (IOException | RuntimeException e) {
+                            // a single misbehaving client must not stop the server
+                            disconnect(connection);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            running = false;
+        }
+    }
+
+    /**
+     * Executes the given task on the selector thread.
+     */
+    private void post(@NotNull Runnable task) {
+        pending.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Accepts a new client. If the client cannot be accepted (e.g. since
+     * the process ran out of file descriptors), only this client is
+     * rejected, and the server keeps serving the other clients.
+     */
+    private void accept() {
+        SocketChannel channel;
+        try {
+            channel = serverChannel.accept();
+        } catch (IOException e) {
+            metrics.failedAccept();
+            return;
+        }
+        if (channel != null) {
+            try {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new Connection(channel, key, metrics));
+            } catch (IOException e) {
+                metrics.failedAccept();
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void read(@NotNull Connection connection) throws IOException {
+        if (!connection.read()) {
+            disconnect(connection);
+            return;
+        }
+        ByteBuffer frame;
+        while (connection.key.isValid() && (frame = connection.nextFrame()) != null) {
+            try {
+                dispatch(connection, frame);
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Truncated message", e);
+            }
+        }
+    }
+
+    /**
+     * Decodes a message of a client and dispatches it. A message which is
+     * shorter than its type requires throws a {@link BufferUnderflowException},
+     * after which the client is disconnected (see {@link #read(Connection)}).
+     */
+    private void dispatch(@NotNull Connection connection, @NotNull ByteBuffer frame) throws IOException {
+        byte type = frame.get();
+        switch (type) {
+            case Protocol.JOIN:
+                join(connection, frame.getInt(), frame.get());
+                break;
+            case Protocol.PROGRAM:
+                int[] cards = new int[Player.NO_REGISTERS];
+                for (int i = 0; i < cards.length; i++) {
+                    cards[i] = frame.get();
+                }
+                program(connection, cards);
+                break;
+            case Protocol.SPECTATE:
+                join(connection, frame.getInt(), Protocol.NONE);
+                break;
+            case Protocol.MATCH:
+                int playersNumber = frame.get();
+                String boardName = Protocol.getString(frame);
+                match(connection, playersNumber, boardName, Protocol.getString(frame));
+                break;
+            case Protocol.CHOICE:
+                choose(connection, frame.get());
+                break;
+            default:
+                throw new IOException("Unknown message type " + type);
+        }
+    }
+
+    private void disconnect(@NotNull Connection connection) {
+        connection.close();
+        if (connection.ticket != null) {
+            // a client waiting in the lobby must not be seated in a game
+            lobby.leave(connection.ticket);
+        }
+        ServedGame served = connection.game;
+        if (served != null) {
+            served.connections.remove(connection);
+            if (connection.playerNo >= 0 && served.controllers[connection.playerNo] == connection) {
+                served.controllers[connection.playerNo] = null;
+            }
+        }
+    }
+
+    private void join(@NotNull Connection connection, int gameId, int playerNo) {
+        if (connection.game != null || connection.joining) {
+            connection.send(Protocol.error("Already joined a game"));
+            return;
+        }
+        HostedGame game = host.getGame(gameId);
+        if (game == null) {
+            connection.send(Protocol.error("No game " + gameId));
+            return;
+        }
+        connection.joining = true;
+        game.execute(gameController -> {
+            Board board = gameController.board;
+            int players = board.getPlayersNumber();
+            ServedGame served = getServedGame(game);
+            if (served.encoder == null) {
+                served.encoder = new DeltaEncoder(board, KEYFRAME_INTERVAL);
+                served.keyframe = served.encoder.encodeKeyframe().asReadOnlyBuffer();
+            }
+            ByteBuffer keyframe = served.keyframe;
+            List<ByteBuffer> deltas = new ArrayList<>(served.deltas);
+            post(() -> {
+                connection.joining = false;
+                if (!connection.key.isValid()) {
+                    // the client disconnected while its request was queued
+                    return;
+                }
+                if (served.ended) {
+                    connection.send(Protocol.error("Game " + gameId + " has ended"));
+                    return;
+                }
+                if (served.controllers.length < players) {
+                    Connection[] controllers = new Connection[players];
+                    System.arraycopy(served.controllers, 0, controllers, 0, served.controllers.length);
+                    served.controllers = controllers;
+                }
+                if (playerNo == Protocol.NONE) {
+                    served.connections.add(connection);
+                    connection.game = served;
+                    connection.send(Protocol.joined(gameId, playerNo));
+                    connection.send(keyframe);
+                    for (ByteBuffer delta: deltas) {
+                        connection.send(delta);
+                    }
+                } else if (playerNo < 0 || playerNo >= players) {
+                    connection.send(Protocol.error("No player " + playerNo + " in game " + gameId));
+                } else if (served.controllers[playerNo] != null) {
+                    connection.send(Protocol.error("Player " + playerNo + " of game " + gameId + " is taken"));
+                } else {
+                    served.controllers[playerNo] = connection;
+                    served.connections.add(connection);
+                    connection.game = served;
+                    connection.playerNo = playerNo;
+                    connection.send(Protocol.joined(gameId, playerNo));
+                    connection.send(keyframe);
+                    for (ByteBuffer delta: deltas) {
+                        connection.send(delta);
+                    }
+                }
+            });
+        }).whenComplete((result, e) -> {
+            if (e != null) {
+                // the game was removed from the host in the meantime
+                post(() -> {
+                    connection.joining = false;
+                    if (connection.key.isValid()) {
+                        connection.send(Protocol.error("No game " + gameId));
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Puts the client into the lobby, where it waits for a game with the
+     * given number of players on the given board. When the game is formed,
+     * the client joins it at its seat.
+     */
+    private void match(@NotNull Connection connection, int playersNumber, String boardName, String name) {
+        if (connection.game != null || connection.joining) {
+            connection.send(Protocol.error("Already joined a game"));
+            return;
+        }
+        if (boardName == null || name == null || playersNumber < Lobby.MIN_PLAYERS || playersNumber > Lobby.MAX_PLAYERS) {
+            connection.send(Protocol.error("Illegal match request"));
+            return;
+        }
+        connection.joining = true;
+        connection.ticket = lobby.join(name, playersNumber, boardName);
+        connection.ticket.whenComplete((seat, e) -> post(() -> {
+            connection.joining = false;
+            connection.ticket = null;
+            if (!connection.key.isValid()) {
+                // the client disconnected after its group was formed, which
+                // is the same as disconnecting right after joining the game
+                return;
+            }
+            if (e != null) {
+                connection.send(Protocol.error("No game could be created"));
+            } else {
+                join(connection, seat.game.id, seat.playerNo);
+            }
+        }));
+    }
+
+    /**
+     * Returns the served game for a hosted game, which is created when the
+     * first client joins the game. Since the tasks of different games run
+     * on different threads, the access to the map is synchronized. When the
+     * hosted game is closed, the served game is ended (see {@link #end(ServedGame)}).
+     */
+    private ServedGame getServedGame(@NotNull HostedGame game) {
+        ServedGame served;
+        synchronized (games) {
+            served = games.get(game.id);
+            if (served != null) {
+                return served;
+            }
+            served = new ServedGame(game);
+            games.put(game.id, served);
+        }
+        ServedGame created = served;
+        game.whenClosed().thenRun(() -> end(created));
+        return served;
+    }
+
+    /**
+     * Ends a served game after its hosted game was closed: the served game
+     * is removed, so that it can be garbage collected together with its
+     * board, and its clients are notified and detached from the game, after
+     * which they may join another game.
+     */
+    private void end(@NotNull ServedGame served) {
+        synchronized (games) {
+            games.remove(served.game.id, served);
+        }
+        release(served);
+        post(() -> {
+            served.ended = true;
+            ByteBuffer message = Protocol.error("Game " + served.game.id + " has ended");
+            for (Connection connection: served.connections) {
+                connection.send(message);
+                connection.game = null;
+                connection.playerNo = -1;
+                connection.awaitingKeyframe = false;
+            }
+            served.connections.clear();
+            served.controllers = new Connection[0];
+        });
+    }
+
+    /**
+     * Detaches the encoder of a served game from the board and drops the
+     * buffered state. This is done by a task of the game, since the tasks
+     * submitted before might still use the encoder.
+     */
+    private void release(@NotNull ServedGame served) {
+        served.game.getGameController().execute(gameController -> releaseState(served))
+                .whenComplete((result, e) -> {
+                    if (e != null) {
+                        // the host was shut down, so no task of the game runs anymore
+                        releaseState(served);
+                    }
+                });
+    }
+
+    private void releaseState(@NotNull ServedGame served) {
+        if (served.encoder != null) {
+            served.encoder.close();
+        }
+        served.keyframe = null;
+        served.deltas.clear();
+    }
+
+    private void program(@NotNull Connection connection, @NotNull int[] cards) {
+        ServedGame served = connection.game;
+        if (served == null || connection.playerNo < 0) {
+            connection.send(Protocol.error("Not joined to a game as a player"));
+            return;
+        }
+        int playerNo = connection.playerNo;
+        served.game.execute(gameController -> {
+            Board board = gameController.board;
+            if (served.submitted == null) {
+                served.submitted = new boolean[board.getPlayersNumber()];
+            }
+            if (board.getPhase() != Phase.PROGRAMMING || served.submitted[playerNo]) {
+                post(() -> connection.send(Protocol.error("Not expecting a program")));
+                return;
+            }
+            Player player = board.getPlayer(playerNo);
+            for (int i = 0; i < Player.NO_REGISTERS; i++) {
+                int card = cards[i];
+                if (card >= 0 && card < Player.NO_CARDS) {
+                    gameController.moveCards(player.getCardField(card), player.getProgramField(i));
+                }
+            }
+            served.submitted[playerNo] = true;
+            served.submittedNumber++;
+            publish(served);
+            if (served.submittedNumber == served.submitted.length) {
+                executeRound(served, gameController);
+            }
+        });
+    }
+
+    private void executeRound(@NotNull ServedGame served, @NotNull GameController gameController) {
+        served.submittedNumber = 0;
+        for (int i = 0; i < served.submitted.length; i++) {
+            served.submitted[i] = false;
+        }
+        gameController.finishProgrammingPhase();
+        publish(served);
+        continueRound(served, gameController);
+    }
+
+    /**
+     * Executes the programs step by step until the round is finished or
+     * suspended for the choice of a player; in the latter case, the round
+     * is continued when the choice arrives (see {@link #choose(Connection, int)}).
+     */
+    private void continueRound(@NotNull ServedGame served, @NotNull GameController gameController) {
+        while (gameController.board.getPhase() == Phase.ACTIVATION) {
+            gameController.executeStep();
+            publish(served);
+        }
+    }
+
+    private void choose(@NotNull Connection connection, int option) {
+        ServedGame served = connection.game;
+        if (served == null || connection.playerNo < 0) {
+            connection.send(Protocol.error("Not joined to a game as a player"));
+            return;
+        }
+        int playerNo = connection.playerNo;
+        served.game.execute(gameController -> {
+            Board board = gameController.board;
+            List<Command> options = board.getPendingOptions();
+            if (board.getCurrentPlayer() != board.getPlayer(playerNo) || option < 0 || option >= options.size()) {
+                post(() -> connection.send(Protocol.error("Not expecting option " + option)));
+                return;
+            }
+            gameController.executeCommandOptionAndContinue(options.get(option));
+            publish(served);
+            continueRound(served, gameController);
+        });
+    }
+
+    /**
+     * Sends the changes of the game since the last delta to all clients of
+     * the game. This method must be called by the tasks of the hosted game.
+     */
+    private void publish(@NotNull ServedGame served) {
+        ByteBuffer encoded = served.encoder.encodeDelta();
+        if (encoded != null) {
+            ByteBuffer delta = encoded.asReadOnlyBuffer();
+            if (served.encoder.isKeyframeDue()) {
+                served.keyframe = served.encoder.encodeKeyframe().asReadOnlyBuffer();
+                served.deltas.clear();
+            } else {
+                served.deltas.add(delta);
+            }
+            post(() -> {
+                for (Connection connection: served.connections) {
+                    sendDelta(served, connection, delta);
+                }
+            });
+        }
+    }
+
+    /**
+     * Sends a delta to a connection, unless the connection has fallen behind.
+     * This method must be called by the selector thread.
+     */
+    private void sendDelta(@NotNull ServedGame served, @NotNull Connection connection, @NotNull ByteBuffer delta) {
+        if (connection.awaitingKeyframe) {
+            // the delta will be covered by the keyframe requested for this connection
+            metrics.droppedUnqueued();
+        } else if (connection.getQueuedBytes() + delta.remaining() > maxQueuedBytes) {
+            connection.dropStateFrames();
+            metrics.droppedUnqueued();
+            metrics.collapsed();
+            connection.awaitingKeyframe = true;
+            served.game.execute(gameController -> {
+                // the cached keyframe is fresh if there were no deltas since;
+                // otherwise, a new one is encoded, which is cached for joining clients too
+                if (!served.deltas.isEmpty()) {
+                    served.keyframe = served.encoder.encodeKeyframe().asReadOnlyBuffer();
+                    served.deltas.clear();
+                }
+                ByteBuffer keyframe = served.keyframe;
+                post(() -> {
+                    connection.awaitingKeyframe = false;
+                    connection.send(keyframe);
+                });
+            });
+        } else {
+            connection.send(delta);
+        }
+    }
+
+}
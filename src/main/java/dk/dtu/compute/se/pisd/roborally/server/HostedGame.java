@@ -0,0 +1,169 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.server;
+
+import dk.dtu.compute.se.pisd.roborally.controller.GameController;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A game hosted by a {@link GameHost}. Tasks for the game can be submitted
+ * from any thread; they are queued and executed one after the other in the
+ * order of their submission, on one of the threads of the host (the host is
+ * the owner of the game controller, see {@link GameController#setOwner}).
+ * A game is scheduled on the host's threads only while it has tasks to
+ * execute, so that idle games do not cost anything but their memory.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public class HostedGame {
+
+    final public int id;
+
+    final private GameHost host;
+
+    final private GameController gameController;
+
+    // the futures of the scheduled tasks, which did not complete yet
+    final private Set<CompletableFuture<Void>> scheduled = ConcurrentHashMap.newKeySet();
+
+    // completes when the game is removed from the host
+    final private CompletableFuture<Void> ended = new CompletableFuture<>();
+
+    private volatile boolean closed = false;
+
+    HostedGame(@NotNull GameHost host, int id, @NotNull GameController gameController) {
+        this.host = host;
+        this.id = id;
+        this.gameController = gameController;
+        gameController.setOwner(host.getScheduler());
+    }
+
+    /**
+     * Returns the game controller of this game. Note that the game must not
+     * be changed directly, but only by tasks submitted to this hosted game.
+     *
+     * @return the game controller of the game
+     */
+    public GameController getGameController() {
+        return gameController;
+    }
+
+    /**
+     * Submits a task for the game, which computes some result from the game.
+     *
+     * @param task the task
+     * @param <T> the type of the result
+     * @return a future of the result of the task
+     */
+    public <T> CompletableFuture<T> submit(@NotNull Function<GameController, T> task) {
+        if (closed) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(notHosted());
+            return future;
+        }
+        return gameController.submit(task);
+    }
+
+    /**
+     * Submits a task for the game.
+     *
+     * @param task the task
+     * @return a future, which completes when the task is executed
+     */
+    public CompletableFuture<Void> execute(@NotNull Consumer<GameController> task) {
+        return submit(gameController -> {
+            task.accept(gameController);
+            return null;
+        });
+    }
+
+    /**
+     * Submits a task for the game after the given delay. If the game is
+     * removed from the host or the host is shut down before the task is
+     * executed, the returned future completes exceptionally.
+     *
+     * @param task the task
+     * @param delay the delay
+     * @param unit the unit of the delay
+     * @return a future, which completes when the task is executed
+     */
+    public CompletableFuture<Void> schedule(@NotNull Consumer<GameController> task, long delay, @NotNull TimeUnit unit) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        scheduled.add(future);
+        future.whenComplete((result, e) -> scheduled.remove(future));
+        try {
+            host.getScheduler().schedule(
+                    () -> execute(task).whenComplete((result, e) -> {
+                        if (e != null) {
+                            future.completeExceptionally(e);
+                        } else {
+                            future.complete(null);
+                        }
+                    }),
+                    delay, unit);
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        if (closed) {
+            // the game might have been closed before the future was added
+            future.completeExceptionally(notHosted());
+        }
+        return future;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Returns a future, which completes when the game is removed from the
+     * host or the host is shut down. Tasks which were submitted before
+     * might still be executed after that.
+     *
+     * @return a future, which completes when the game is closed
+     */
+    public CompletableFuture<Void> whenClosed() {
+        return ended.copy();
+    }
+
+    void close() {
+        closed = true;
+        for (CompletableFuture<Void> future: scheduled) {
+            future.completeExceptionally(notHosted());
+        }
+        ended.complete(null);
+    }
+
+    private IllegalStateException notHosted() {
+        return new IllegalStateException("Game " + id + " is not hosted anymore!");
+    }
+
+}
@@ -0,0 +1,327 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.server;
+
+import dk.dtu.compute.se.pisd.roborally.controller.GameController;
+import dk.dtu.compute.se.pisd.roborally.model.Board;
+import dk.dtu.compute.se.pisd.roborally.model.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The lobby of a {@link GameHost}, where players wait until there are enough
+ * players for a game. Players join the lobby with the number of players and
+ * the board of the game they want to play; players wanting the same kind of
+ * game are queued together. As soon as there are enough players waiting in
+ * a queue, they are taken out of the queue as a group, and a new game with
+ * these players is created and hosted by the game host.
+ *
+ * The lobby does not use locks: the queues are lock-free, and the groups
+ * of a queue are formed by one thread at a time, which takes as many groups
+ * as there are complete groups waiting (so that a burst of joins results in
+ * a batch of games). The other threads just add their players to the queue
+ * and return.
+ *
+ * A player can leave the lobby while waiting (see {@link #leave(CompletableFuture)});
+ * the ticket of the player is then marked as cancelled, so that it is
+ * skipped when the groups are formed.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public class Lobby {
+
+    public static final int MIN_PLAYERS = 2;
+
+    public static final int MAX_PLAYERS = 6;
+
+    private static final String[] PLAYER_COLORS = {"red", "green", "blue", "orange", "grey", "magenta"};
+
+    /**
+     * Creates the (empty) boards for the games formed by the lobby.
+     */
+    public interface BoardFactory {
+
+        /**
+         * Creates a board without players.
+         *
+         * @param boardName the name of the board
+         * @return the new board
+         */
+        Board createBoard(@NotNull String boardName);
+
+    }
+
+    /**
+     * The seat of a player in a game formed by the lobby. The player can
+     * join the game at this seat (see {@link dk.dtu.compute.se.pisd.roborally.net.Protocol#join(int, int)}).
+     */
+    public static final class Seat {
+
+        final public HostedGame game;
+
+        final public int playerNo;
+
+        Seat(@NotNull HostedGame game, int playerNo) {
+            this.game = game;
+            this.playerNo = playerNo;
+        }
+
+    }
+
+    final private GameHost host;
+
+    final private BoardFactory boardFactory;
+
+    final private Map<Key, WaitingQueue> queues = new ConcurrentHashMap<>();
+
+    final private LongAdder joins = new LongAdder();
+
+    final private LongAdder games = new LongAdder();
+
+    public Lobby(@NotNull GameHost host) {
+        this(host, boardName -> new Board(8, 8, boardName));
+    }
+
+    public Lobby(@NotNull GameHost host, @NotNull BoardFactory boardFactory) {
+        this.host = host;
+        this.boardFactory = boardFactory;
+    }
+
+    /**
+     * Adds a player to the lobby. The returned future completes with the
+     * seat of the player, when a game with enough players is formed.
+     *
+     * @param name the name of the player
+     * @param playersNumber the number of players of the game
+     * @param boardName the name of the board of the game
+     * @return a future of the seat of the player in the new game
+     */
+    public CompletableFuture<Seat> join(@NotNull String name, int playersNumber, @NotNull String boardName) {
+        if (playersNumber < MIN_PLAYERS || playersNumber > MAX_PLAYERS) {
+            throw new IllegalArgumentException("The number of players must be between " + MIN_PLAYERS + " and " + MAX_PLAYERS + "!");
+        }
+        WaitingQueue queue = queues.computeIfAbsent(new Key(playersNumber, boardName), WaitingQueue::new);
+        Ticket ticket = new Ticket(queue, name);
+        queue.tickets.add(ticket);
+        // the ticket is counted after it was added, so that the thread forming
+        // the groups never counts a ticket which it cannot poll yet
+        queue.waiting.incrementAndGet();
+        joins.increment();
+        formGames(queue);
+        return ticket;
+    }
+
+    /**
+     * Takes a waiting player out of the lobby; the future of the player's
+     * seat is cancelled then. A player whose group was formed already
+     * cannot leave anymore. Cancelling the future has the same effect.
+     *
+     * @param seat the future of the seat returned when the player joined
+     * @return true if the player left the lobby
+     */
+    public boolean leave(@NotNull CompletableFuture<Seat> seat) {
+        return seat instanceof Ticket && seat.cancel(false);
+    }
+
+    /**
+     * @return the number of players waiting for a game
+     */
+    public int getWaitingNumber() {
+        int waiting = 0;
+        for (WaitingQueue queue: queues.values()) {
+            waiting += queue.waiting.get();
+        }
+        return waiting;
+    }
+
+    public long getJoins() {
+        return joins.sum();
+    }
+
+    public long getGames() {
+        return games.sum();
+    }
+
+    private void formGames(@NotNull WaitingQueue queue) {
+        int players = queue.key.playersNumber;
+        while (queue.waiting.get() >= players && queue.forming.compareAndSet(false, true)) {
+            List<Ticket[]> groups = new ArrayList<>();
+            try {
+                int waiting = queue.waiting.get();
+                while (waiting >= players) {
+                    Ticket[] group = takeGroup(queue);
+                    if (group == null) {
+                        break;
+                    }
+                    groups.add(group);
+                    waiting = queue.waiting.addAndGet(-players);
+                }
+            } finally {
+                queue.forming.set(false);
+            }
+            // the games are created after the queue is released, so that
+            // other threads can form the next groups in the meantime
+            for (Ticket[] group: groups) {
+                createGame(queue.key.boardName, group);
+            }
+            // a ticket might have been counted after the last check, but before
+            // forming was reset; in that case, the loop forms its group
+        }
+    }
+
+    /**
+     * Takes the tickets of the next group from the queue, skipping the
+     * cancelled ones. If a player left the lobby after the waiting players
+     * were counted, there might not be enough tickets left; then, the
+     * tickets taken are put back to the queue and null is returned.
+     */
+    private static Ticket[] takeGroup(@NotNull WaitingQueue queue) {
+        Ticket[] group = new Ticket[queue.key.playersNumber];
+        int taken = 0;
+        while (taken < group.length) {
+            Ticket ticket = queue.tickets.poll();
+            if (ticket == null) {
+                for (int i = 0; i < taken; i++) {
+                    group[i].state.set(Ticket.WAITING);
+                    queue.tickets.add(group[i]);
+                }
+                return null;
+            }
+            if (ticket.state.compareAndSet(Ticket.WAITING, Ticket.TAKEN)) {
+                group[taken++] = ticket;
+            }
+        }
+        return group;
+    }
+
+    private void createGame(@NotNull String boardName, @NotNull Ticket[] group) {
+        HostedGame game;
+        try {
+            Board board = boardFactory.createBoard(boardName);
+            for (int i = 0; i < group.length; i++) {
+                Player player = new Player(board, PLAYER_COLORS[i], group[i].name);
+                board.addPlayer(player);
+                player.setSpace(board.getSpace(i % board.width, i));
+            }
+            game = host.host(new GameController(board));
+        } catch (RuntimeException e) {
+            for (Ticket ticket: group) {
+                ticket.completeExceptionally(e);
+            }
+            return;
+        }
+        game.execute(GameController::startProgrammingPhase);
+        games.increment();
+        for (int i = 0; i < group.length; i++) {
+            group[i].complete(new Seat(game, i));
+        }
+    }
+
+    private static final class Key {
+
+        final int playersNumber;
+
+        final String boardName;
+
+        Key(int playersNumber, @NotNull String boardName) {
+            this.playersNumber = playersNumber;
+            this.boardName = boardName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return playersNumber == other.playersNumber && boardName.equals(other.boardName);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * boardName.hashCode() + playersNumber;
+        }
+
+    }
+
+    private static final class WaitingQueue {
+
+        final Key key;
+
+        final Queue<Ticket> tickets = new ConcurrentLinkedQueue<>();
+
+        // the number of tickets in the queue, which are not taken by a group yet
+        final AtomicInteger waiting = new AtomicInteger(0);
+
+        final AtomicBoolean forming = new AtomicBoolean(false);
+
+        WaitingQueue(@NotNull Key key) {
+            this.key = key;
+        }
+
+    }
+
+    /**
+     * The ticket of a waiting player, which is the future of the player's
+     * seat at the same time.
+     */
+    private static final class Ticket extends CompletableFuture<Seat> {
+
+        static final int WAITING = 0;
+        static final int TAKEN = 1;
+        static final int CANCELLED = 2;
+
+        final WaitingQueue queue;
+
+        final String name;
+
+        final AtomicInteger state = new AtomicInteger(WAITING);
+
+        Ticket(@NotNull WaitingQueue queue, @NotNull String name) {
+            this.queue = queue;
+            this.name = name;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!state.compareAndSet(WAITING, CANCELLED)) {
+                return false;
+            }
+            queue.waiting.decrementAndGet();
+            queue.tickets.remove(this);
+            return super.cancel(mayInterruptIfRunning);
+        }
+
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.server;
+
+import dk.dtu.compute.se.pisd.roborally.net.DeltaEncoder;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A game served by the {@link GameServer} to its clients. The connections
+ * of a served game are accessed by the selector thread of the server only;
+ * the submitted programs and the state stream are accessed by the tasks of
+ * the hosted game only.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+class ServedGame {
+
+    final HostedGame game;
+
+    // accessed by the selector thread only
+
+    final List<Connection> connections = new ArrayList<>();
+
+    Connection[] controllers = new Connection[0];
+
+    // set when the hosted game was closed and the clients were notified
+    boolean ended;
+
+    // accessed by the tasks of the hosted game only
+
+    boolean[] submitted;
+
+    int submittedNumber;
+
+    DeltaEncoder encoder;
+
+    // the last keyframe and the deltas sent after it, which are sent to
+    // clients joining the game
+    ByteBuffer keyframe;
+
+    final List<ByteBuffer> deltas = new ArrayList<>();
+
+    ServedGame(@NotNull HostedGame game) {
+        this.game = game;
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ *  This file is part of the initial project provided for the
+ *  course "Project in Software Development (02362)" held at
+ *  DTU Compute at the Technical University of Denmark.
+ *
+ *  Copyright (C) 2019, 2020: Ekkart Kindler, ekki@dtu.dk
+ *
+ *  This software is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; version 2 of the License.
+ *
+ *  This project is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this project; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package dk.dtu.compute.se.pisd.roborally.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the outbound queues of the connections of a {@link GameServer},
+ * and counts of the errors the server survived (clients which could not be
+ * accepted and failing tasks). The metrics are updated by the selector thread of the server and can be
+ * read from any thread.
+ *
+ * @author Ekkart Kindler, ekki@dtu.dk
+ *
+ */
+public class ServerMetrics {
+
+    final private AtomicLong queuedFrames = new AtomicLong();
+
+    final private AtomicLong queuedBytes = new AtomicLong();
+
+    final private AtomicLong maxConnectionQueuedBytes = new AtomicLong();
+
+    final private LongAdder droppedFrames = new LongAdder();
+
+    final private LongAdder discardedFrames = new LongAdder();
+
+    final private LongAdder collapses = new LongAdder();
+
+    final private LongAdder failedAccepts = new LongAdder();
+
+    final private LongAdder failedTasks = new LongAdder();
+
+    /**
+     * @return the number of frames currently queued over all connections
+     */
+    public long getQueuedFrames() {
+        return queuedFrames.get();
+    }
+
+    /**
+     * @return the number of bytes currently queued over all connections
+     */
+    public long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    /**
+     * @return the largest number of bytes, which was queued for a single connection so far
+     */
+    public long getMaxConnectionQueuedBytes() {
+        return maxConnectionQueuedBytes.get();
+    }
+
+    /**
+     * @return the number of deltas and keyframes, which were not sent since their clients fell behind
+     */
+    public long getDroppedFrames() {
+        return droppedFrames.sum();
+    }
+
+    /**
+     * @return the number of frames, which were still queued when their connection was closed
+     */
+    public long getDiscardedFrames() {
+        return discardedFrames.sum();
+    }
+
+    /**
+     * @return the number of times the queued deltas of a client were replaced by a fresh keyframe
+     */
+    public long getCollapses() {
+        return collapses.sum();
+    }
+
+    /**
+     * @return the number of clients, which could not be accepted
+     */
+    public long getFailedAccepts() {
+        return failedAccepts.sum();
+    }
+
+    /**
+     * @return the number of tasks of the selector thread, which failed
+     */
+    public long getFailedTasks() {
+        return failedTasks.sum();
+    }
+
+    void queued(long bytes, long connectionQueuedBytes) {
+        queuedFrames.incrementAndGet();
+        queuedBytes.addAndGet(bytes);
+        maxConnectionQueuedBytes.accumulateAndGet(connectionQueuedBytes, Math::max);
+    }
+
+    void written(int frames, long bytes) {
+        queuedFrames.addAndGet(-frames);
+        queuedBytes.addAndGet(-bytes);
+    }
+
+    void dropped(int frames, long bytes) {
+        written(frames, bytes);
+        droppedFrames.add(frames);
+    }
+
+    void discarded(int frames, long bytes) {
+        written(frames, bytes);
+        discardedFrames.add(frames);
+    }
+
+    void droppedUnqueued() {
+        droppedFrames.increment();
+    }
+
+    void collapsed() {
+        collapses.increment();
+    }
+
+    void failedAccept() {
+        failedAccepts.increment();
+    }
+
+    void failedTask() {
+        failedTasks.increment();
+    }
+
+}
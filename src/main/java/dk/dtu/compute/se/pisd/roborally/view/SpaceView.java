@@ -22,6 +22,7 @@
 package dk.dtu.compute.se.pisd.roborally.view;
 
 import dk.dtu.compute.se.pisd.designpatterns.observer.Subject;
+import dk.dtu.compute.se.pisd.roborally.controller.*;
 import dk.dtu.compute.se.pisd.roborally.model.Heading;
 import dk.dtu.compute.se.pisd.roborally.model.Player;
 import dk.dtu.compute.se.pisd.roborally.model.Space;
@@ -31,6 +32,7 @@ import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Polygon;
 import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.text.Text;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -72,8 +74,65 @@ public class SpaceView extends StackPane implements ViewObserver {
         update(space);
     }
 
+    private void updateLayout() {
+        if (!space.getWalls().isEmpty()) {
+            Canvas canvas = new Canvas(SPACE_WIDTH, SPACE_HEIGHT);
+            GraphicsContext gc = canvas.getGraphicsContext2D();
+            gc.setStroke(Color.RED);
+            gc.setLineWidth(5);
+            gc.setLineCap(StrokeLineCap.ROUND);
+            for (Heading heading: space.getWalls()) {
+                switch (heading) {
+                    case SOUTH:
+                        gc.strokeLine(2, SPACE_HEIGHT - 2, SPACE_WIDTH - 2, SPACE_HEIGHT - 2);
+                        break;
+                    case WEST:
+                        gc.strokeLine(2, 2, 2, SPACE_HEIGHT - 2);
+                        break;
+                    case NORTH:
+                        gc.strokeLine(2, 2, SPACE_WIDTH - 2, 2);
+                        break;
+                    case EAST:
+                        gc.strokeLine(SPACE_WIDTH - 2, 2, SPACE_WIDTH - 2, SPACE_HEIGHT - 2);
+                        break;
+                }
+            }
+            this.getChildren().add(canvas);
+        }
+
+        for (FieldAction action: space.getActions()) {
+            if (action instanceof ConveyorBelt) {
+                Polygon arrow = new Polygon(0.0, 0.0,
+                        30.0, 0.0,
+                        15.0, 30.0);
+                arrow.setFill(Color.LIGHTGRAY);
+                arrow.setRotate((90 * ((ConveyorBelt) action).getHeading().ordinal()) % 360);
+                this.getChildren().add(arrow);
+            } else {
+                String label;
+                if (action instanceof CheckPoint) {
+                    label = Integer.toString(((CheckPoint) action).getNumber());
+                } else if (action instanceof Gear) {
+                    label = ((Gear) action).isClockwise() ? "\u21BB" : "\u21BA";
+                } else if (action instanceof PushPanel) {
+                    label = "Push";
+                } else if (action instanceof BoardLaser) {
+                    label = "Laser";
+                } else if (action instanceof PriorityAntenna) {
+                    label = "Antenna";
+                } else {
+                    label = "?";
+                }
+                Text text = new Text(label);
+                text.setFill(Color.GRAY);
+                this.getChildren().add(text);
+            }
+        }
+    }
+
     private void updatePlayer() {
         this.getChildren().clear();
+        updateLayout();
 
         Player player = space.getPlayer();
         if (player != null) {
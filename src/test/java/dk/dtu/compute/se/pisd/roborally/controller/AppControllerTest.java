@@ -9,4 +9,13 @@ class AppControllerTest {
     @Test
     void newGame() {
     }
-}
\ No newline at end of file
+
+    @Test
+    void validGameNames() {
+        assertTrue(AppController.isValidGameName("game"), "A plain name should be valid!");
+        assertTrue(AppController.isValidGameName("my game 2"), "A name with spaces should be valid!");
+        for (String name: new String[]{"", " ", ".", "..", "../game", "games/game", "/tmp/game", "..\\game", "C:game", ".hidden"}) {
+            assertFalse(AppController.isValidGameName(name), "The name \"" + name + "\" should not be valid!");
+        }
+    }
+}
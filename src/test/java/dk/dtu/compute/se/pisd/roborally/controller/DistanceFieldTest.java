@@ -0,0 +1,76 @@
+package dk.dtu.compute.se.pisd.roborally.controller;
+
+import dk.dtu.compute.se.pisd.roborally.model.Board;
+import dk.dtu.compute.se.pisd.roborally.model.Heading;
+import dk.dtu.compute.se.pisd.roborally.model.Space;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DistanceFieldTest {
+
+    private final int TEST_WIDTH = 8;
+    private final int TEST_HEIGHT = 8;
+
+    private Board board;
+
+    @BeforeEach
+    void setUp() {
+        board = new Board(TEST_WIDTH, TEST_HEIGHT);
+        board.getSpace(3, 3).addAction(new CheckPoint(1));
+        board.getSpace(5, 6).addAction(new CheckPoint(2));
+        board.getSpace(3, 4).addWall(Heading.NORTH);
+        board.getSpace(2, 3).addWall(Heading.SOUTH);
+        board.getSpace(4, 3).addWall(Heading.WEST);
+    }
+
+    @Test
+    void distances() {
+        DistanceField field = DistanceField.of(board, 1);
+        for (Heading heading: Heading.values()) {
+            Assertions.assertEquals(0, field.getDistance(3, 3, heading), "The checkpoint should have distance 0!");
+        }
+        Assertions.assertEquals(1, field.getDistance(3, 2, Heading.SOUTH), "One forward move should reach the checkpoint!");
+        Assertions.assertEquals(1, field.getDistance(3, 1, Heading.SOUTH), "One fast forward move should reach the checkpoint!");
+        Assertions.assertEquals(3, field.getDistance(3, 2, Heading.NORTH), "Two turns and one move should reach the checkpoint!");
+        Assertions.assertTrue(field.getDistance(3, 4, Heading.NORTH) > 1, "The wall should block the direct move!");
+        Assertions.assertEquals(DistanceField.UNREACHABLE, DistanceField.of(board, 3).getDistance(0, 0, Heading.SOUTH),
+                "A missing checkpoint should not be reachable!");
+
+        // every distance must be one more than the best distance after one card
+        for (int x = 0; x < TEST_WIDTH; x++) {
+            for (int y = 0; y < TEST_HEIGHT; y++) {
+                for (Heading heading: Heading.values()) {
+                    int distance = field.getDistance(x, y, heading);
+                    if (distance > 0) {
+                        Space space = board.getSpace(x, y);
+                        Space forward = move(space, heading);
+                        int best = Math.min(
+                                Math.min(field.getDistance(x, y, heading.next()), field.getDistance(x, y, heading.prev())),
+                                Math.min(field.getDistance(forward.x, forward.y, heading),
+                                        field.getDistance(move(forward, heading).x, move(forward, heading).y, heading)));
+                        Assertions.assertEquals(best + 1, distance, "The distance of (" + x + "," + y + "," + heading + ") should be minimal!");
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void cache() {
+        DistanceField field = DistanceField.of(board, 2);
+        Assertions.assertSame(field, DistanceField.of(board.copy(), 2), "Boards with the same layout should share the distance field!");
+
+        board.getSpace(5, 5).addWall(Heading.SOUTH);
+        DistanceField changed = DistanceField.of(board, 2);
+        Assertions.assertNotSame(field, changed, "A changed layout should have a new distance field!");
+        Assertions.assertEquals(1, field.getDistance(5, 5, Heading.SOUTH), "The old field should not be changed!");
+        Assertions.assertTrue(changed.getDistance(5, 5, Heading.SOUTH) > 1, "The new field should respect the new wall!");
+    }
+
+    private Space move(Space space, Heading heading) {
+        Space neighbour = board.getNeighbour(space, heading);
+        return neighbour != null ? neighbour : space;
+    }
+
+}
@@ -1,14 +1,28 @@
 package dk.dtu.compute.se.pisd.roborally.controller;
 
-import dk.dtu.compute.se.pisd.roborally.model.Board;
-import dk.dtu.compute.se.pisd.roborally.model.Heading;
-import dk.dtu.compute.se.pisd.roborally.model.Player;
-import dk.dtu.compute.se.pisd.roborally.model.Space;
+import dk.dtu.compute.se.pisd.roborally.model.*;
+import dk.dtu.compute.se.pisd.roborally.net.DeltaEncoder;
+import dk.dtu.compute.se.pisd.roborally.net.Protocol;
+import dk.dtu.compute.se.pisd.roborally.net.StateDecoder;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 class GameControllerTest {
 
     private final int TEST_WIDTH = 8;
@@ -59,4 +73,338 @@ class GameControllerTest {
         Assertions.assertNull(board.getSpace(0, 0).getPlayer(), "Space (0,0) should be empty!");
     }
 
-}
\ No newline at end of file
+    @Test
+    void undoStep() {
+        Board board = gameController.board;
+        Player player = board.getPlayer(0);
+        gameController.startProgrammingPhase();
+        player.getProgramField(0).setCard(new CommandCard(Command.FAST_FORWARD));
+        player.getProgramField(1).setCard(new CommandCard(Command.RIGHT));
+        gameController.finishProgrammingPhase();
+
+        gameController.setRecordingUndo(true);
+        gameController.executeStep();
+        Assertions.assertEquals(player, board.getSpace(0, 2).getPlayer(), "Player " + player.getName() + " should be on space (0,2)!");
+        Assertions.assertEquals(board.getPlayer(1), board.getCurrentPlayer(), "Current player should be " + board.getPlayer(1).getName() + "!");
+
+        Assertions.assertTrue(gameController.undoStep(false), "A step should have been undone!");
+        Assertions.assertEquals(player, board.getSpace(0, 0).getPlayer(), "Player " + player.getName() + " should be back on space (0,0)!");
+        Assertions.assertNull(board.getSpace(0, 2).getPlayer(), "Space (0,2) should be empty!");
+        Assertions.assertEquals(player, board.getCurrentPlayer(), "Current player should be " + player.getName() + " again!");
+        Assertions.assertFalse(gameController.undoStep(false), "There should be no more steps to undo!");
+    }
+
+    @Test
+    void undoToMark() {
+        Board board = gameController.board;
+        gameController.startProgrammingPhase();
+        for (int i = 0; i < board.getPlayersNumber(); i++) {
+            Player player = board.getPlayer(i);
+            for (int j = 0; j < Player.NO_REGISTERS; j++) {
+                player.getProgramField(j).setCard(new CommandCard(Command.values()[(i + j) % Command.values().length]));
+            }
+        }
+        gameController.finishProgrammingPhase();
+
+        Space[] spaces = new Space[board.getPlayersNumber()];
+        Heading[] headings = new Heading[board.getPlayersNumber()];
+        for (int i = 0; i < board.getPlayersNumber(); i++) {
+            spaces[i] = board.getPlayer(i).getSpace();
+            headings[i] = board.getPlayer(i).getHeading();
+        }
+
+        gameController.setRecordingUndo(true);
+        int mark = gameController.getUndoMark();
+        gameController.executePrograms();
+        while (board.getPhase() == Phase.PLAYER_INTERACTION) {
+            gameController.executeCommandOptionAndContinue(board.getPendingOptions().get(0));
+        }
+        Assertions.assertEquals(Phase.PROGRAMMING, board.getPhase(), "The programs should have been executed completely!");
+
+        gameController.undoTo(mark, false);
+        Assertions.assertEquals(Phase.ACTIVATION, board.getPhase(), "The board should be back in the activation phase!");
+        Assertions.assertEquals(0, board.getStep(), "The board should be back at step 0!");
+        for (int i = 0; i < board.getPlayersNumber(); i++) {
+            Player player = board.getPlayer(i);
+            Assertions.assertEquals(spaces[i], player.getSpace(), "Player " + player.getName() + " should be back on its space!");
+            Assertions.assertEquals(headings[i], player.getHeading(), "Player " + player.getName() + " should have its old heading!");
+            Assertions.assertNotNull(player.getProgramField(0).getCard(), "The program of " + player.getName() + " should be restored!");
+        }
+    }
+
+    @Test
+    void interactiveCard() {
+        Board board = gameController.board;
+        Player player = board.getPlayer(0);
+        Heading heading = player.getHeading();
+        gameController.startProgrammingPhase();
+        player.getProgramField(0).setCard(new CommandCard(Command.OPTION_LEFT_RIGHT));
+        gameController.finishProgrammingPhase();
+
+        gameController.executePrograms();
+        Assertions.assertEquals(Phase.PLAYER_INTERACTION, board.getPhase(), "The execution should be suspended for the choice!");
+        Assertions.assertEquals(player, board.getCurrentPlayer(), player.getName() + " should have to choose!");
+        Assertions.assertEquals(0, board.getStep(), "The execution should be suspended in the first register!");
+        Assertions.assertEquals(Command.OPTION_LEFT_RIGHT.getOptions(), board.getPendingOptions(), "The options of the card should be pending!");
+        Assertions.assertEquals(heading, player.getHeading(), "The card should not be executed before the choice!");
+
+        Assertions.assertFalse(gameController.executeCommandOptionAndContinue(Command.FORWARD), "An option not offered by the card should be rejected!");
+        Assertions.assertTrue(gameController.executeCommandOptionAndContinue(Command.LEFT), "The chosen option should be executed!");
+        Assertions.assertEquals(heading.prev(), player.getHeading(), player.getName() + " should have turned left!");
+        Assertions.assertEquals(Phase.PROGRAMMING, board.getPhase(), "The programs should have been continued until the end of the round!");
+        Assertions.assertTrue(board.getPendingOptions().isEmpty(), "No choice should be pending anymore!");
+    }
+
+    @Test
+    void customCommandHandler() {
+        Board board = gameController.board;
+        Player player = board.getPlayer(0);
+        Space space = player.getSpace();
+        Heading heading = player.getHeading();
+        CommandRegistry registry = new CommandRegistry();
+        Assertions.assertSame(registry.getHandler(Command.FORWARD), registry.getHandler(Command.LEFT), "All commands should have the built-in handler!");
+        registry.register(Command.FORWARD, (controller, p, command) -> controller.turnRight(p));
+        GameController controller = new GameController(board, new Random(), registry);
+
+        controller.startProgrammingPhase();
+        player.getProgramField(0).setCard(new CommandCard(Command.FORWARD));
+        controller.finishProgrammingPhase();
+        controller.executeStep();
+        Assertions.assertEquals(space, player.getSpace(), "The custom handler should not move " + player.getName() + "!");
+        Assertions.assertEquals(heading.next(), player.getHeading(), "The custom handler should turn " + player.getName() + " right!");
+    }
+
+    @Test
+    void boardHash() {
+        Board board = gameController.board;
+        Player player = board.getPlayer(0);
+        long hash = board.getHash();
+
+        gameController.turnRight(player);
+        gameController.turnLeft(player);
+        Assertions.assertEquals(hash, board.getHash(), "Turning back should give the same hash!");
+
+        gameController.moveForward(player);
+        long moved = board.getHash();
+        Assertions.assertNotEquals(hash, moved, "Moving a player should change the hash!");
+
+        gameController.setRecordingUndo(true);
+        int mark = gameController.getUndoMark();
+        gameController.fastForward(player);
+        gameController.undoTo(mark, false);
+        Assertions.assertEquals(moved, board.getHash(), "Undoing should restore the hash!");
+
+        TranspositionTable<String> table = new TranspositionTable<>(16);
+        table.put(moved, "moved");
+        Assertions.assertEquals("moved", table.get(board.getHash()), "The state should be found in the table!");
+        Assertions.assertNull(table.get(hash), "The old state should not be found in the table!");
+    }
+
+    @Test
+    void dealFromDeck() {
+        Board board = gameController.board;
+        Player player = board.getPlayer(0);
+        CommandDeck deck = player.getDeck();
+        int total = deck.getDrawSize() + deck.getDiscardSize();
+        for (int round = 0; round < 10; round++) {
+            gameController.startProgrammingPhase();
+            int[] counts = new int[Command.values().length];
+            for (int i = 0; i < Player.NO_CARDS; i++) {
+                CommandCard card = player.getCardField(i).getCard();
+                Assertions.assertNotNull(card, "Every card field should get a card!");
+                counts[card.command.ordinal()]++;
+            }
+            for (Command command: Command.values()) {
+                Assertions.assertTrue(counts[command.ordinal()] <= CommandDeck.getDefaultCopies(command), "There should not be more cards with command " + command + " than in the deck!");
+            }
+            Assertions.assertEquals(total, deck.getDrawSize() + deck.getDiscardSize() + Player.NO_CARDS, "No card should be lost or added!");
+        }
+
+        gameController.setRecordingUndo(true);
+        int mark = gameController.getUndoMark();
+        int drawSize = deck.getDrawSize();
+        CommandCard card = player.getCardField(0).getCard();
+        gameController.startProgrammingPhase();
+        gameController.undoTo(mark, false);
+        Assertions.assertEquals(drawSize, deck.getDrawSize(), "Undo should restore the deck!");
+        Assertions.assertSame(card, player.getCardField(0).getCard(), "Undo should restore the dealt cards!");
+    }
+
+    @Test
+    void activateElements() {
+        Board board = gameController.board;
+        board.getSpace(0, 0).addAction(new ConveyorBelt(Heading.EAST));
+        board.getSpace(1, 0).addAction(new ConveyorBelt(Heading.EAST));
+        board.getSpace(2, 2).addAction(new Gear(true));
+        board.getSpace(3, 3).addAction(new CheckPoint(1));
+        board.getSpace(5, 5).addAction(new CheckPoint(2));
+        Assertions.assertEquals(2, board.getElementSpaces(ConveyorBelt.class).size(), "The board should know its conveyor belts!");
+        Assertions.assertEquals(board.getLayoutSignature(), board.copy().getLayoutSignature(), "The copy should have the same layout!");
+
+        gameController.startProgrammingPhase();
+        gameController.finishProgrammingPhase();
+        gameController.setRecordingUndo(true);
+        long hash = board.getHash();
+        for (int i = 0; i < board.getPlayersNumber(); i++) {
+            gameController.executeStep();
+        }
+
+        Assertions.assertEquals(board.getSpace(1, 0), board.getPlayer(0).getSpace(), "The conveyor belt should have moved the player by one space only!");
+        Assertions.assertEquals(Heading.EAST, board.getPlayer(2).getHeading(), "The gear should have turned the player clockwise!");
+        Assertions.assertEquals(1, board.getPlayer(3).getLastCheckpoint(), "The player should have reached the first checkpoint!");
+        Assertions.assertEquals(0, board.getPlayer(5).getLastCheckpoint(), "The player should not reach the second checkpoint first!");
+
+        gameController.undoStep(false);
+        Assertions.assertEquals(0, board.getPlayer(3).getLastCheckpoint(), "Undo should revert the checkpoint!");
+        while (gameController.undoStep(false)) {
+        }
+        Assertions.assertEquals(hash, board.getHash(), "Undo should restore the hash!");
+    }
+
+    @Test
+    void walls() {
+        Board board = gameController.board;
+        Player player4 = board.getPlayer(4);
+        Player player5 = board.getPlayer(5);
+        board.getSpace(4, 4).addWall(player4.getHeading());
+        board.getSpace(4, 5).addWall(Heading.EAST);
+
+        gameController.moveForward(player4);
+        Assertions.assertEquals(board.getSpace(4, 4), player4.getSpace(), "A wall on the player's space should block the move!");
+        gameController.moveToNeighbour(player5, Heading.WEST);
+        Assertions.assertEquals(board.getSpace(5, 5), player5.getSpace(), "A wall on the target space should block the move!");
+        gameController.moveToNeighbour(player5, Heading.NORTH);
+        Assertions.assertEquals(board.getSpace(5, 4), player5.getSpace(), "A move without walls should not be blocked!");
+    }
+
+    @Test
+    void lasers() {
+        Board board = gameController.board;
+        LaserTable lasers = gameController.getLaserTable();
+        Player player1 = board.getPlayer(1);
+        Player player3 = board.getPlayer(3);
+        Player player5 = board.getPlayer(5);
+
+        Assertions.assertEquals(player1, lasers.getTarget(board.getSpace(0, 1), Heading.EAST), "The laser should hit " + player1.getName() + "!");
+        Assertions.assertEquals(player1, lasers.getTarget(board.getSpace(7, 1), Heading.WEST), "The laser should hit " + player1.getName() + "!");
+        gameController.moveToNeighbour(player1, Heading.NORTH);
+        Assertions.assertNull(lasers.getTarget(board.getSpace(0, 1), Heading.EAST), "The laser should not hit a player who left the row!");
+        Assertions.assertEquals(player1, lasers.getTarget(board.getSpace(0, 0), Heading.EAST), "The laser should hit " + player1.getName() + " in its new row!");
+
+        Assertions.assertEquals(player3, lasers.getTarget(board.getSpace(3, 0), Heading.SOUTH), "The laser should hit " + player3.getName() + "!");
+        board.getSpace(3, 1).addWall(Heading.SOUTH);
+        Assertions.assertNull(lasers.getTarget(board.getSpace(3, 0), Heading.SOUTH), "The laser should be blocked by the wall!");
+
+        Space space = board.getSpace(7, 5);
+        BoardLaser laser = new BoardLaser(Heading.WEST);
+        space.addAction(laser);
+        gameController.setRecordingUndo(true);
+        int mark = gameController.getUndoMark();
+        long hash = board.getHash();
+        Assertions.assertTrue(laser.doAction(gameController, space), "The laser of the board should hit a player!");
+        Assertions.assertEquals(1, player5.getDamage(), player5.getName() + " should have one damage!");
+        Assertions.assertNotEquals(hash, board.getHash(), "The damage should change the hash of the board!");
+        gameController.undoTo(mark, false);
+        Assertions.assertEquals(0, player5.getDamage(), "The damage of " + player5.getName() + " should be undone!");
+        Assertions.assertEquals(hash, board.getHash(), "The hash of the board should be restored!");
+    }
+
+    @Test
+    void priorityAntenna() {
+        Board board = gameController.board;
+        Assertions.assertArrayEquals(new int[]{0, 1, 2, 3, 4, 5}, board.getPriorityOrder(), "Without antenna, the players should be ordered by their numbers!");
+        board.getSpace(7, 7).addAction(new PriorityAntenna());
+        Assertions.assertArrayEquals(new int[]{5, 4, 3, 2, 1, 0}, board.getPriorityOrder(), "The players closest to the antenna should come first!");
+        board.getPlayer(0).setSpace(board.getSpace(7, 6));
+        Assertions.assertArrayEquals(new int[]{0, 5, 4, 3, 2, 1}, board.getPriorityOrder(), "The moved player should be reordered!");
+
+        gameController.startProgrammingPhase();
+        board.getPlayer(5).getProgramField(0).setCard(new CommandCard(Command.FAST_FORWARD));
+        gameController.finishProgrammingPhase();
+        int[] expected = {0, 5, 4, 3, 2, 1};
+        for (int i = 0; i < expected.length; i++) {
+            Assertions.assertEquals(board.getPlayer(expected[i]), board.getCurrentPlayer(), "Player " + expected[i] + " should be activated next in the first register!");
+            gameController.executeStep();
+        }
+        Assertions.assertEquals(1, board.getStep(), "The second register should have started!");
+        Assertions.assertArrayEquals(new int[]{0, 4, 5, 3, 2, 1}, board.getActivationOrder(), "The order of the second register should reflect the move of player 5!");
+        Assertions.assertEquals(board.getPlayer(0), board.getCurrentPlayer(), "Player 0 should be activated first in the second register!");
+
+        // the clients of a game must see the same order
+        DeltaEncoder encoder = new DeltaEncoder(board, Integer.MAX_VALUE);
+        StateDecoder decoder = new StateDecoder();
+        decoder.apply(skipLength(encoder.encodeKeyframe()));
+        Assertions.assertArrayEquals(board.getActivationOrder(), decoder.getBoard().getActivationOrder(), "The keyframe should contain the activation order!");
+        board.setActivationOrder(new int[]{1, 2, 3, 4, 5, 0});
+        decoder.apply(skipLength(encoder.encodeDelta()));
+        Assertions.assertArrayEquals(new int[]{1, 2, 3, 4, 5, 0}, decoder.getBoard().getActivationOrder(), "The delta should contain the new activation order!");
+        encoder.close();
+        board.setActivationOrder(null);
+        board.getPlayer(0).setSpace(board.getSpace(0, 7));
+        Assertions.assertNull(encoder.encodeDelta(), "A closed encoder should not observe the board anymore!");
+    }
+
+    private static ByteBuffer skipLength(ByteBuffer frame) {
+        frame.position(frame.position() + Protocol.LENGTH_SIZE);
+        return frame;
+    }
+
+    @Test
+    void submitCommands() throws Exception {
+        Board board = gameController.board;
+        ExecutorService owner = Executors.newFixedThreadPool(4);
+        ExecutorService submitters = Executors.newFixedThreadPool(4);
+        try {
+            for (Executor executor: new Executor[]{null, owner}) {
+                gameController.setOwner(executor);
+                board.setStep(0);
+                AtomicInteger executing = new AtomicInteger(0);
+                List<CompletableFuture<Integer>> steps = new ArrayList<>();
+                List<Future<?>> submitted = new ArrayList<>();
+                for (int t = 0; t < 4; t++) {
+                    submitted.add(submitters.submit(() -> {
+                        for (int i = 0; i < 1000; i++) {
+                            CompletableFuture<Integer> step = gameController.submit(gc -> {
+                                Assertions.assertEquals(1, executing.incrementAndGet(), "Only one command should be executed at a time!");
+                                int next = gc.board.getStep() + 1;
+                                gc.board.setStep(next);
+                                executing.decrementAndGet();
+                                return next;
+                            });
+                            synchronized (steps) {
+                                steps.add(step);
+                            }
+                        }
+                    }));
+                }
+                for (Future<?> future: submitted) {
+                    future.get(10, TimeUnit.SECONDS);
+                }
+                for (CompletableFuture<Integer> step: steps) {
+                    step.get(10, TimeUnit.SECONDS);
+                }
+                int step = gameController.submit(gc -> gc.board.getStep()).get(10, TimeUnit.SECONDS);
+                Assertions.assertEquals(4000, step, "No command should have been lost!");
+            }
+        } finally {
+            owner.shutdownNow();
+            submitters.shutdownNow();
+        }
+    }
+
+    @Test
+    void submitToShutDownOwner() throws Exception {
+        ExecutorService owner = Executors.newSingleThreadExecutor();
+        owner.shutdown();
+        gameController.setOwner(owner);
+        CompletableFuture<Integer> step = gameController.submit(gc -> gc.board.getStep());
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> step.get(1, TimeUnit.SECONDS),
+                "A command submitted to a shut down owner should fail!");
+        Assertions.assertTrue(e.getCause() instanceof RejectedExecutionException, "The command should be rejected!");
+
+        gameController.setOwner(null);
+        Assertions.assertEquals(gameController.board.getStep(), gameController.submit(gc -> gc.board.getStep()).get(1, TimeUnit.SECONDS),
+                "The game should still execute commands with a new owner!");
+    }
+
+}
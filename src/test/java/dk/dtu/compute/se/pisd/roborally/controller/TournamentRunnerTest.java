@@ -0,0 +1,57 @@
+package dk.dtu.compute.se.pisd.roborally.controller;
+
+import dk.dtu.compute.se.pisd.roborally.model.Board;
+import dk.dtu.compute.se.pisd.roborally.model.Player;
+import dk.dtu.compute.se.pisd.roborally.model.Space;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+class TournamentRunnerTest {
+
+    private final int TEST_WIDTH = 8;
+    private final int TEST_HEIGHT = 8;
+
+    private TournamentRunner runner;
+
+    @BeforeEach
+    void setUp() {
+        TournamentRunner.BoardFactory boardFactory = game -> {
+            Board board = new Board(TEST_WIDTH, TEST_HEIGHT);
+            for (int i = 0; i < 4; i++) {
+                Player player = new Player(board, null, "Player " + i);
+                board.addPlayer(player);
+                player.setSpace(board.getSpace(2 * i, 0));
+            }
+            return board;
+        };
+        // the first player reaching the last row wins
+        TournamentRunner.WinCondition winCondition = board -> {
+            for (int i = 0; i < board.getPlayersNumber(); i++) {
+                Space space = board.getPlayer(i).getSpace();
+                if (space != null && space.y == TEST_HEIGHT - 1) {
+                    return board.getPlayer(i);
+                }
+            }
+            return null;
+        };
+        runner = new TournamentRunner(boardFactory, Arrays.asList(new RandomBot(), new RandomBot()), winCondition, 20);
+    }
+
+    @Test
+    void run() {
+        TournamentResult result = runner.run(500, 42);
+
+        Assertions.assertEquals(500, result.games, "All games should have been played!");
+        Assertions.assertEquals(result.games, result.getWins(0) + result.getWins(1) + result.draws, "Every game should be won or drawn!");
+        Assertions.assertEquals(1000, result.getPlayed(0), "Every strategy should have played with two players in every game!");
+        Assertions.assertTrue(result.getWins(0) > 0, "The random bot should win some games!");
+
+        TournamentResult again = runner.run(500, 42);
+        Assertions.assertEquals(result.getWins(0), again.getWins(0), "The same seed should give the same results!");
+        Assertions.assertEquals(result.rounds, again.rounds, "The same seed should give the same results!");
+    }
+
+}
@@ -0,0 +1,102 @@
+package dk.dtu.compute.se.pisd.roborally.fileaccess;
+
+import dk.dtu.compute.se.pisd.roborally.controller.*;
+import dk.dtu.compute.se.pisd.roborally.model.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+class GameFileTest {
+
+    private final int TEST_WIDTH = 8;
+    private final int TEST_HEIGHT = 8;
+
+    private Board board;
+
+    @BeforeEach
+    void setUp() {
+        board = new Board(TEST_WIDTH, TEST_HEIGHT);
+        String[] colors = {"red", "green", "blue", "orange"};
+        for (int i = 0; i < colors.length; i++) {
+            Player player = new Player(board, colors[i], "Player " + (i + 1));
+            board.addPlayer(player);
+            player.setSpace(board.getSpace(i, i));
+        }
+        board.getSpace(0, 2).addAction(new ConveyorBelt(Heading.EAST));
+        board.getSpace(3, 5).addAction(new CheckPoint(1));
+        board.getSpace(3, 5).addWall(Heading.WEST);
+        GameController gameController = new GameController(board, new Random(42));
+        gameController.startProgrammingPhase();
+        gameController.damage(board.getPlayer(1), 2);
+    }
+
+    private byte[] save(boolean compressed) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GameFile.save(board, out, compressed);
+        return out.toByteArray();
+    }
+
+    @Test
+    void saveAndLoad() throws IOException {
+        BoardSnapshot expected = BoardSnapshot.of(board);
+        byte[] raw = save(false);
+        byte[] compressed = save(true);
+        for (byte[] file: new byte[][]{raw, compressed}) {
+            Board loaded = GameFile.load(new ByteArrayInputStream(file));
+            BoardDiff diff = BoardDiff.of(expected, BoardSnapshot.of(loaded));
+            Assertions.assertTrue(diff.isEmpty(), "The loaded game should be in the saved state, but differs in: " + diff);
+            assertSameDecks(board, loaded);
+        }
+        Assertions.assertEquals(GameFile.DEFLATE, compressed[4], "The compressed file should have the deflate format!");
+        Assertions.assertTrue(compressed.length < raw.length / 2,
+                "The compressed file (" + compressed.length + " bytes) should be much smaller than the raw file (" + raw.length + " bytes)!");
+    }
+
+    private static void assertSameDecks(Board board, Board loaded) {
+        for (int i = 0; i < board.getPlayersNumber(); i++) {
+            CommandDeck deck = board.getPlayer(i).getDeck();
+            CommandDeck loadedDeck = loaded.getPlayer(i).getDeck();
+            Assertions.assertArrayEquals(deck.getDrawPile(), loadedDeck.getDrawPile(),
+                    "The draw pile of player " + i + " should be saved!");
+            Assertions.assertArrayEquals(deck.getDiscardPile(), loadedDeck.getDiscardPile(),
+                    "The discard pile of player " + i + " should be saved!");
+        }
+    }
+
+    @Test
+    void saveAndLoadJson() throws IOException {
+        board.getSpace(4, 1).addAction(new PushPanel(Heading.NORTH, 2, 4));
+        board.getSpace(4, 2).addAction(new Gear(true));
+        BoardSnapshot expected = BoardSnapshot.of(board);
+        StringWriter out = new StringWriter();
+        GameFile.saveJson(board, out);
+        Board loaded = GameFile.load(new ByteArrayInputStream(out.toString().getBytes(StandardCharsets.UTF_8)));
+        BoardDiff diff = BoardDiff.of(expected, BoardSnapshot.of(loaded));
+        Assertions.assertTrue(diff.isEmpty(), "The loaded game should be in the saved state, but differs in: " + diff);
+        Assertions.assertEquals(board.getLayoutSignature(), loaded.getLayoutSignature(),
+                "The loaded game should have the layout of the saved game!");
+        assertSameDecks(board, loaded);
+        Assertions.assertThrows(IOException.class, () -> GameFile.loadJson(new StringReader("{\"layout\": []}")),
+                "A game without the size of the board should not be loaded!");
+    }
+
+    @Test
+    void invalidFiles() throws IOException {
+        byte[] compressed = save(true);
+        byte[] truncated = new byte[compressed.length / 2];
+        System.arraycopy(compressed, 0, truncated, 0, truncated.length);
+        Assertions.assertThrows(IOException.class, () -> GameFile.load(new ByteArrayInputStream(truncated)),
+                "A truncated file should not be loaded!");
+        Assertions.assertThrows(IOException.class, () -> GameFile.load(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 0})),
+                "A file without the magic number should not be loaded!");
+    }
+
+}
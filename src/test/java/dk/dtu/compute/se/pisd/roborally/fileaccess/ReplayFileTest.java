@@ -0,0 +1,88 @@
+package dk.dtu.compute.se.pisd.roborally.fileaccess;
+
+import dk.dtu.compute.se.pisd.roborally.controller.CheckPoint;
+import dk.dtu.compute.se.pisd.roborally.controller.ConveyorBelt;
+import dk.dtu.compute.se.pisd.roborally.controller.GameController;
+import dk.dtu.compute.se.pisd.roborally.model.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+class ReplayFileTest {
+
+    private final int TEST_WIDTH = 8;
+    private final int TEST_HEIGHT = 8;
+
+    @Test
+    void replay(@TempDir Path directory) throws IOException {
+        Board board = new Board(TEST_WIDTH, TEST_HEIGHT);
+        for (int i = 0; i < 3; i++) {
+            Player player = new Player(board, null, "Player " + (i + 1));
+            board.addPlayer(player);
+            player.setSpace(board.getSpace(i, i));
+        }
+        board.getSpace(1, 3).addAction(new ConveyorBelt(Heading.EAST));
+        board.getSpace(4, 4).addAction(new CheckPoint(1));
+        GameController gameController = new GameController(board, new Random(7));
+
+        Path file = directory.resolve("game.rrrp");
+        List<BoardSnapshot> expected = new ArrayList<>();
+        try (ReplayWriter writer = new ReplayWriter(board, file, 5)) {
+            expected.add(BoardSnapshot.of(board));
+            for (int round = 0; round < 4; round++) {
+                gameController.startProgrammingPhase();
+                for (int i = 0; i < board.getPlayersNumber(); i++) {
+                    Player player = board.getPlayer(i);
+                    for (int j = 0, k = 0; j < Player.NO_CARDS && k < Player.NO_REGISTERS; j++) {
+                        CommandCard card = player.getCardField(j).getCard();
+                        if (card != null && !card.command.isInteractive()) {
+                            player.getProgramField(k++).setCard(card);
+                        }
+                    }
+                }
+                gameController.finishProgrammingPhase();
+                writer.recordStep();
+                expected.add(BoardSnapshot.of(board));
+                while (board.getPhase() == Phase.ACTIVATION) {
+                    gameController.executeStep();
+                    writer.recordStep();
+                    expected.add(BoardSnapshot.of(board));
+                }
+            }
+            Assertions.assertEquals(expected.size(), writer.getSteps(), "Every step should be recorded!");
+        }
+
+        try (ReplayFile replay = ReplayFile.open(file)) {
+            Assertions.assertEquals(expected.size(), replay.getSteps(), "The replay should have all recorded steps!");
+            // seek backwards and forwards through the game
+            for (int step = expected.size() - 1; step >= 0; step -= 3) {
+                assertStep(replay, expected, step);
+            }
+            for (int step = 0; step < expected.size(); step += 2) {
+                assertStep(replay, expected, step);
+            }
+            Assertions.assertThrows(IndexOutOfBoundsException.class, () -> replay.getBoard(expected.size()),
+                    "A step after the end of the replay should not exist!");
+        }
+
+        byte[] bytes = Files.readAllBytes(file);
+        Path truncated = directory.resolve("truncated.rrrp");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 1));
+        Assertions.assertThrows(IOException.class, () -> ReplayFile.open(truncated).close(),
+                "A truncated replay should not be opened!");
+    }
+
+    private static void assertStep(ReplayFile replay, List<BoardSnapshot> expected, int step) throws IOException {
+        BoardDiff diff = BoardDiff.of(expected.get(step), BoardSnapshot.of(replay.getBoard(step)));
+        Assertions.assertTrue(diff.isEmpty(), "Step " + step + " of the replay should be restored, but differs in: " + diff);
+    }
+
+}
@@ -0,0 +1,164 @@
+package dk.dtu.compute.se.pisd.roborally.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class BoardTest {
+
+    private final int TEST_WIDTH = 8;
+    private final int TEST_HEIGHT = 8;
+
+    private Board board;
+
+    @BeforeEach
+    void setUp() {
+        board = new Board(TEST_WIDTH, TEST_HEIGHT);
+        for (int i = 0; i < 4; i++) {
+            Player player = new Player(board, null,"Player " + i);
+            board.addPlayer(player);
+            player.setSpace(board.getSpace(i, i));
+            player.setHeading(Heading.values()[i % Heading.values().length]);
+            player.getCardField(i).setCard(new CommandCard(Command.values()[i % Command.values().length]));
+        }
+        board.setCurrentPlayer(board.getPlayer(0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        board = null;
+    }
+
+    @Test
+    void copy() {
+        Board copy = board.copy();
+
+        Assertions.assertEquals(board.getHash(), copy.getHash(), "The copy should have the same hash!");
+        Assertions.assertEquals(board.getPlayersNumber(), copy.getPlayersNumber(), "The copy should have the same number of players!");
+        for (int i = 0; i < board.getPlayersNumber(); i++) {
+            Player copied = copy.getPlayer(i);
+            Assertions.assertEquals(copied, copy.getSpace(i, i).getPlayer(), "Player " + i + " of the copy should be on space (" + i + "," + i + ")!");
+            Assertions.assertEquals(board.getPlayer(i).getCardField(i).getCard(), copied.getCardField(i).getCard(), "The copy should have the same cards!");
+        }
+        Assertions.assertEquals(copy.getPlayer(0), copy.getCurrentPlayer(), "The current player of the copy should be its first player!");
+
+        copy.getPlayer(0).setSpace(copy.getSpace(5, 0));
+        Assertions.assertEquals(board.getPlayer(0), board.getSpace(0, 0).getPlayer(), "Changing the copy should not change the original board!");
+        Assertions.assertNotEquals(board.getHash(), copy.getHash(), "The changed copy should have a different hash!");
+    }
+
+    @Test
+    void snapshot() {
+        BoardSnapshot first = BoardSnapshot.of(board);
+        board.getPlayer(1).setHeading(Heading.NORTH);
+        BoardSnapshot second = BoardSnapshot.of(board, first);
+
+        Assertions.assertSame(first.getPlayer(0), second.getPlayer(0), "Unchanged players should be shared between snapshots!");
+        Assertions.assertNotSame(first.getPlayer(1), second.getPlayer(1), "Changed players should not be shared between snapshots!");
+        Assertions.assertEquals(Heading.NORTH, second.getPlayer(1).heading, "The snapshot should have the new heading!");
+        Assertions.assertEquals(2, second.getPlayerNumberAt(2, 2), "Player 2 should be on space (2,2) in the snapshot!");
+
+        Board restored = first.toBoard();
+        Assertions.assertEquals(first.hash, restored.getHash(), "The restored board should have the hash of the snapshot!");
+    }
+
+    @Test
+    void diff() {
+        BoardSnapshot first = BoardSnapshot.of(board);
+        board.getPlayer(1).setSpace(board.getSpace(1, 2));
+        board.getPlayer(2).setHeading(board.getPlayer(2).getHeading().next());
+        board.getPlayer(3).getCardField(3).setCard(null);
+        board.setStep(2);
+        BoardSnapshot second = BoardSnapshot.of(board, first);
+
+        BoardDiff diff = BoardDiff.of(first, second);
+        Assertions.assertFalse(diff.isEmpty(), "The snapshots should differ!");
+        Assertions.assertTrue(diff.isStepChanged(), "The step should have changed!");
+        Assertions.assertFalse(diff.isPhaseChanged(), "The phase should not have changed!");
+        Assertions.assertEquals(3, diff.getChangedPlayersNumber(), "Three players should have changed!");
+        Assertions.assertEquals(0, diff.getPlayerChanges(0), "Player 0 should not have changed!");
+        Assertions.assertEquals(BoardDiff.POSITION, diff.getPlayerChanges(1), "Only the position of player 1 should have changed!");
+        Assertions.assertEquals(BoardDiff.HEADING, diff.getPlayerChanges(2), "Only the heading of player 2 should have changed!");
+        Assertions.assertEquals(BoardDiff.CARDS, diff.getPlayerChanges(3), "Only the cards of player 3 should have changed!");
+        Assertions.assertEquals(1 << 3, diff.getCardChanges(3), "Only card field 3 of player 3 should have changed!");
+        Assertions.assertTrue(diff.toString().contains("position (1,1) -> (1,2)"), "The description should contain the move of player 1!");
+
+        Assertions.assertTrue(BoardDiff.of(second, BoardSnapshot.of(board.copy())).isEmpty(), "A copy of the board should not differ!");
+    }
+
+    @Test
+    void lazySpaces() {
+        Board large = new Board(4000, 3000);
+        Assertions.assertEquals(0, large.getAllocatedSpacesNumber(), "No spaces should be allocated before they are used!");
+
+        Space space = large.getSpace(3999, 2999);
+        Assertions.assertEquals(3999, space.x, "The space should have the requested position!");
+        Assertions.assertEquals(2999, space.y, "The space should have the requested position!");
+        Assertions.assertSame(space, large.getSpace(3999, 2999), "The same position should always give the same space!");
+        Assertions.assertEquals(Board.CHUNK_SIZE * (3000 % Board.CHUNK_SIZE), large.getAllocatedSpacesNumber(), "Only the chunk of the space should be allocated!");
+
+        Player player = new Player(large, null, "Player");
+        large.addPlayer(player);
+        player.setSpace(space);
+        Assertions.assertSame(player, large.getNeighbour(large.getNeighbour(space, Heading.EAST), Heading.WEST).getPlayer(), "The player should be found across chunks!");
+        Assertions.assertTrue(large.getAllocatedSpacesNumber() < 4 * Board.CHUNK_SIZE * Board.CHUNK_SIZE, "Only the chunks around the player should be allocated!");
+        Assertions.assertNull(large.getSpace(4000, 0), "There should be no space outside the board!");
+    }
+
+    @Test
+    void occupancy() {
+        Assertions.assertTrue(board.isOccupied(2, 2), "Space (2,2) should be occupied!");
+        Assertions.assertFalse(board.isOccupied(2, 3), "Space (2,3) should be free!");
+        Assertions.assertFalse(board.isOccupied(-1, 0), "A space outside the board should not be occupied!");
+        Assertions.assertTrue(board.isRowOccupied(1, 0, 1), "Row 1 should be occupied between 0 and 1!");
+        Assertions.assertFalse(board.isRowOccupied(1, 2, 7), "Row 1 should be free between 2 and 7!");
+        Assertions.assertTrue(board.isColumnOccupied(3, 0, 3), "Column 3 should be occupied between 0 and 3!");
+        Assertions.assertFalse(board.isColumnOccupied(3, 4, 7), "Column 3 should be free between 4 and 7!");
+
+        board.getPlayer(3).setSpace(board.getSpace(3, 1));
+        Assertions.assertFalse(board.isOccupied(3, 3), "Space (3,3) should be free after the move!");
+        Assertions.assertEquals(board.getSpace(3, 1), board.getFirstOccupied(board.getSpace(1, 1), Heading.EAST), "The next player east of (1,1) should be on (3,1)!");
+        Assertions.assertEquals(board.getSpace(1, 1), board.getFirstOccupied(board.getSpace(3, 1), Heading.EAST), "Going east from (3,1) should wrap around to (1,1)!");
+        Assertions.assertEquals(board.getSpace(3, 1), board.getFirstOccupied(board.getSpace(1, 1), Heading.WEST), "Going west from (1,1) should wrap around to (3,1)!");
+        Assertions.assertEquals(board.getSpace(1, 1), board.getFirstOccupied(board.getSpace(2, 1), Heading.WEST), "The next player west of (2,1) should be on (1,1)!");
+        Assertions.assertEquals(board.getSpace(3, 1), board.getFirstOccupied(board.getSpace(3, 5), Heading.NORTH), "The next player north of (3,5) should be on (3,1)!");
+        Assertions.assertEquals(board.getSpace(3, 1), board.getFirstOccupied(board.getSpace(3, 1), Heading.SOUTH), "The only player of column 3 should be found last!");
+        Assertions.assertNull(board.getFirstOccupied(board.getSpace(0, 5), Heading.EAST), "There should be no player in row 5!");
+    }
+
+    @Test
+    void readDuringUpdates() throws Exception {
+        Player player = board.getPlayer(0);
+        AtomicBoolean running = new AtomicBoolean(true);
+        // every update moves the player by two spaces, so that a consistent
+        // state always has the player on a space with an even x coordinate
+        Thread updater = new Thread(() -> {
+            while (running.get()) {
+                board.beginUpdate();
+                try {
+                    for (int i = 0; i < 2; i++) {
+                        Space space = player.getSpace();
+                        player.setSpace(board.getSpace((space.x + 1) % TEST_WIDTH, space.y));
+                    }
+                    Assertions.assertEquals(board.getHash(), board.read(Board::getHash), "The updating thread should read its own changes!");
+                } finally {
+                    board.endUpdate();
+                }
+            }
+        });
+        updater.start();
+        try {
+            for (int i = 0; i < 100000; i++) {
+                int x = board.read(b -> b.getPlayer(0).getSpace().x);
+                Assertions.assertEquals(0, x % 2, "A reader should never see the state in the middle of an update!");
+            }
+        } finally {
+            running.set(false);
+            updater.join();
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package dk.dtu.compute.se.pisd.roborally.server;
+
+import dk.dtu.compute.se.pisd.roborally.controller.GameController;
+import dk.dtu.compute.se.pisd.roborally.model.Board;
+import dk.dtu.compute.se.pisd.roborally.model.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class GameHostTest {
+
+    private final int TEST_WIDTH = 8;
+    private final int TEST_HEIGHT = 8;
+    private final int TEST_GAMES = 20;
+    private final int TEST_TASKS = 500;
+
+    private GameHost host;
+
+    @BeforeEach
+    void setUp() {
+        host = new GameHost(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        host.shutdown();
+    }
+
+    private HostedGame createGame() {
+        Board board = new Board(TEST_WIDTH, TEST_HEIGHT);
+        for (int i = 0; i < 2; i++) {
+            Player player = new Player(board, null, "Player " + i);
+            board.addPlayer(player);
+            player.setSpace(board.getSpace(i, 0));
+        }
+        return host.host(new GameController(board));
+    }
+
+    @Test
+    void hostGames() throws Exception {
+        List<HostedGame> games = new ArrayList<>();
+        List<AtomicInteger> executing = new ArrayList<>();
+        for (int g = 0; g < TEST_GAMES; g++) {
+            games.add(createGame());
+            executing.add(new AtomicInteger(0));
+        }
+        Assertions.assertEquals(TEST_GAMES, host.getGamesNumber(), "All games should be hosted!");
+
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < TEST_TASKS; i++) {
+            for (int g = 0; g < TEST_GAMES; g++) {
+                AtomicInteger gameExecuting = executing.get(g);
+                tasks.add(games.get(g).execute(gameController -> {
+                    Assertions.assertEquals(1, gameExecuting.incrementAndGet(), "The tasks of a game should be executed one at a time!");
+                    threads.add(Thread.currentThread().getName());
+                    gameController.board.setStep(gameController.board.getStep() + 1);
+                    gameExecuting.decrementAndGet();
+                }));
+            }
+        }
+        for (CompletableFuture<Void> task: tasks) {
+            task.get(10, TimeUnit.SECONDS);
+        }
+        for (HostedGame game: games) {
+            int step = game.submit(gameController -> gameController.board.getStep()).get(1, TimeUnit.SECONDS);
+            Assertions.assertEquals(TEST_TASKS, step, "All tasks of game " + game.id + " should have been executed!");
+        }
+        for (String thread: threads) {
+            Assertions.assertTrue(thread.startsWith("game-host-"), "The tasks should be executed by the threads of the host!");
+        }
+        Assertions.assertTrue(threads.size() <= 2, "The games should share the threads of the host!");
+
+        CompletableFuture<Void> scheduled = games.get(0).schedule(gameController -> gameController.board.setStep(0), 10, TimeUnit.MILLISECONDS);
+        scheduled.get(1, TimeUnit.SECONDS);
+        Assertions.assertEquals(0, (int) games.get(0).submit(gameController -> gameController.board.getStep()).get(),
+                "The scheduled task should have been executed!");
+
+        HostedGame removed = games.get(1);
+        host.remove(removed);
+        Assertions.assertTrue(removed.isClosed(), "A removed game should be closed!");
+        Assertions.assertNull(host.getGame(removed.id), "A removed game should not be hosted anymore!");
+        Assertions.assertThrows(ExecutionException.class, () -> removed.submit(gameController -> null).get(1, TimeUnit.SECONDS),
+                "A removed game should not accept tasks!");
+    }
+
+    @Test
+    void shutdown() throws Exception {
+        HostedGame game = createGame();
+        CompletableFuture<Void> later = game.schedule(gameController -> {}, 1, TimeUnit.HOURS);
+
+        host.shutdown();
+        Assertions.assertTrue(host.awaitTermination(1, TimeUnit.SECONDS), "The threads of the host should terminate!");
+        Assertions.assertEquals(0, host.getGamesNumber(), "No game should be hosted anymore!");
+        Assertions.assertThrows(ExecutionException.class, () -> later.get(1, TimeUnit.SECONDS),
+                "A task scheduled before the shutdown should fail!");
+        Assertions.assertThrows(ExecutionException.class, () -> game.submit(gameController -> null).get(1, TimeUnit.SECONDS),
+                "A game should not accept tasks after the shutdown!");
+
+        HostedGame orphan = new HostedGame(host, 0, new GameController(new Board(TEST_WIDTH, TEST_HEIGHT)));
+        Assertions.assertThrows(ExecutionException.class,
+                () -> orphan.schedule(gameController -> {}, 0, TimeUnit.MILLISECONDS).get(1, TimeUnit.SECONDS),
+                "A task rejected by the shut down host should fail!");
+        Assertions.assertThrows(ExecutionException.class, () -> orphan.submit(gameController -> null).get(1, TimeUnit.SECONDS),
+                "A command rejected by the shut down host should fail!");
+    }
+
+}
@@ -0,0 +1,392 @@
+package dk.dtu.compute.se.pisd.roborally.server;
+
+import dk.dtu.compute.se.pisd.roborally.controller.*;
+import dk.dtu.compute.se.pisd.roborally.model.*;
+import dk.dtu.compute.se.pisd.roborally.net.Protocol;
+import dk.dtu.compute.se.pisd.roborally.net.StateDecoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.Selector;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class GameServerTest {
+
+    private final int TEST_WIDTH = 8;
+    private final int TEST_HEIGHT = 8;
+    private final int TEST_PLAYERS = 2;
+
+    private GameHost host;
+
+    private GameServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        host = new GameHost(2);
+        server = new GameServer(host);
+        server.start(0);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+        host.shutdown();
+    }
+
+    private HostedGame createGame(long seed) {
+        Board board = new Board(TEST_WIDTH, TEST_HEIGHT);
+        for (int i = 0; i < TEST_PLAYERS; i++) {
+            Player player = new Player(board, null, "Player " + i);
+            board.addPlayer(player);
+            player.setSpace(board.getSpace(i, 0));
+        }
+        board.getSpace(0, 2).addAction(new ConveyorBelt(Heading.EAST));
+        board.getSpace(1, 3).addAction(new Gear(false));
+        board.getSpace(2, 4).addAction(new PushPanel(Heading.NORTH, 1, 3));
+        board.getSpace(3, 5).addAction(new CheckPoint(1));
+        board.getSpace(3, 5).addWall(Heading.WEST);
+        GameController gameController = new GameController(board, new Random(seed));
+        gameController.startProgrammingPhase();
+        return host.host(gameController);
+    }
+
+    private SocketChannel connect() throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()));
+        channel.socket().setSoTimeout(5000);
+        return channel;
+    }
+
+    private static void send(SocketChannel channel, ByteBuffer frame) throws IOException {
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    private static ByteBuffer receive(SocketChannel channel) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(Protocol.LENGTH_SIZE);
+        readFully(channel, length);
+        ByteBuffer frame = ByteBuffer.allocate(length.getInt(0));
+        readFully(channel, frame);
+        frame.flip();
+        return frame;
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Connection closed");
+            }
+        }
+    }
+
+    /**
+     * Sends the choice of the first option for the interactive command card
+     * pending in the state of the decoder from the client of the current
+     * player, unless it was sent already (all clients of a game see the same
+     * pending choices).
+     */
+    private static void choose(StateDecoder decoder, List<SocketChannel> players, Set<String> chosen, String round) throws IOException {
+        Board board = decoder.getBoard();
+        if (board.getPhase() == Phase.PLAYER_INTERACTION) {
+            int playerNo = board.getPlayerNumber(board.getCurrentPlayer());
+            if (chosen.add(round + "/" + board.getStep() + "/" + playerNo)) {
+                send(players.get(playerNo), Protocol.choice(0));
+            }
+        }
+    }
+
+    private static void assertSameState(BoardSnapshot expected, BoardSnapshot actual) {
+        BoardDiff diff = BoardDiff.of(expected, actual);
+        Assertions.assertTrue(diff.isEmpty(), "The boards should be in the same state, but differ in: " + diff);
+        Assertions.assertEquals(expected.hash, actual.hash, "The boards should have the same hash!");
+        Assertions.assertEquals(expected.phase, actual.phase, "The boards should be in the same phase!");
+        Assertions.assertEquals(expected.layoutSignature, actual.layoutSignature, "The boards should have the same layout!");
+        for (int i = 0; i < expected.getPlayersNumber(); i++) {
+            PlayerSnapshot player = expected.getPlayer(i);
+            PlayerSnapshot other = actual.getPlayer(i);
+            Assertions.assertEquals(player.name, other.name, "The players should have the same name!");
+            for (int j = 0; j < Player.NO_CARDS; j++) {
+                CommandCard card = player.getCard(j);
+                CommandCard otherCard = other.getCard(j);
+                Assertions.assertEquals(card != null ? card.command : null, otherCard != null ? otherCard.command : null,
+                        "The players should have the same cards!");
+                Assertions.assertEquals(player.isCardFieldVisible(j), other.isCardFieldVisible(j),
+                        "The card fields should have the same visibility!");
+            }
+        }
+    }
+
+    @Test
+    void playRounds() throws Exception {
+        int games = 10;
+        List<HostedGame> hostedGames = new ArrayList<>();
+        List<SocketChannel> clients = new ArrayList<>();
+        List<StateDecoder> decoders = new ArrayList<>();
+        for (int g = 0; g < games; g++) {
+            HostedGame game = createGame(g);
+            hostedGames.add(game);
+            for (int i = 0; i < TEST_PLAYERS; i++) {
+                SocketChannel client = connect();
+                clients.add(client);
+                send(client, Protocol.join(game.id, i));
+                ByteBuffer joined = receive(client);
+                Assertions.assertEquals(Protocol.JOINED, joined.get(), "The client should have joined the game!");
+                StateDecoder decoder = new StateDecoder();
+                decoders.add(decoder);
+                Assertions.assertTrue(decoder.apply(receive(client)), "The client should receive the state of the game!");
+                Assertions.assertEquals(Phase.PROGRAMMING, decoder.getBoard().getPhase(), "The game should be in the programming phase!");
+            }
+        }
+
+        Set<String> chosen = new HashSet<>();
+        for (int round = 0; round < 3; round++) {
+            for (SocketChannel client: clients) {
+                send(client, Protocol.program(new int[]{0, 1, 2, 3, 4}));
+            }
+            for (int c = 0; c < clients.size(); c++) {
+                StateDecoder decoder = decoders.get(c);
+                boolean activated = false;
+                int g = c / TEST_PLAYERS;
+                while (!activated || decoder.getBoard().getPhase() != Phase.PROGRAMMING) {
+                    Assertions.assertTrue(decoder.apply(receive(clients.get(c))), "The client should receive deltas only!");
+                    activated = activated || decoder.getBoard().getPhase() == Phase.ACTIVATION;
+                    choose(decoder, clients.subList(g * TEST_PLAYERS, (g + 1) * TEST_PLAYERS), chosen, round + "/" + g);
+                }
+                HostedGame game = hostedGames.get(g);
+                BoardSnapshot expected = game.submit(gameController -> BoardSnapshot.of(gameController.board)).get();
+                assertSameState(expected, BoardSnapshot.of(decoder.getBoard()));
+            }
+        }
+
+        SocketChannel intruder = connect();
+        send(intruder, Protocol.join(hostedGames.get(0).id, 0));
+        Assertions.assertEquals(Protocol.ERROR, receive(intruder).get(), "A player should not be joined twice!");
+
+        for (SocketChannel client: clients) {
+            client.close();
+        }
+        intruder.close();
+    }
+
+    @Test
+    void spectate() throws Exception {
+        int spectators = 100;
+        HostedGame game = createGame(42);
+        List<SocketChannel> players = new ArrayList<>();
+        for (int i = 0; i < TEST_PLAYERS; i++) {
+            SocketChannel player = connect();
+            players.add(player);
+            send(player, Protocol.join(game.id, i));
+            Assertions.assertEquals(Protocol.JOINED, receive(player).get(), "The player should have joined the game!");
+        }
+
+        List<SocketChannel> clients = new ArrayList<>();
+        List<StateDecoder> decoders = new ArrayList<>();
+        for (int i = 0; i < spectators; i++) {
+            SocketChannel client = connect();
+            clients.add(client);
+            decoders.add(new StateDecoder());
+            send(client, Protocol.spectate(game.id));
+            ByteBuffer joined = receive(client);
+            Assertions.assertEquals(Protocol.JOINED, joined.get(), "The spectator should have joined the game!");
+            Assertions.assertEquals(game.id, joined.getInt(), "The spectator should have joined the game!");
+            Assertions.assertEquals(Protocol.NONE, joined.get(), "The spectator should not be a player!");
+            Assertions.assertTrue(decoders.get(i).apply(receive(client)), "The spectator should receive the state of the game!");
+        }
+
+        send(clients.get(0), Protocol.program(new int[]{0, 1, 2, 3, 4}));
+        Assertions.assertEquals(Protocol.ERROR, receive(clients.get(0)).get(), "A spectator should not send programs!");
+
+        for (SocketChannel player: players) {
+            send(player, Protocol.program(new int[]{0, 1, 2, 3, 4}));
+        }
+        Set<String> chosen = new HashSet<>();
+        for (int c = 0; c < spectators; c++) {
+            StateDecoder decoder = decoders.get(c);
+            boolean activated = false;
+            while (!activated || decoder.getBoard().getPhase() != Phase.PROGRAMMING) {
+                Assertions.assertTrue(decoder.apply(receive(clients.get(c))), "The spectator should receive the state only!");
+                activated = activated || decoder.getBoard().getPhase() == Phase.ACTIVATION;
+                choose(decoder, players, chosen, "");
+            }
+        }
+        BoardSnapshot expected = game.submit(gameController -> BoardSnapshot.of(gameController.board)).get();
+        for (StateDecoder decoder: decoders) {
+            assertSameState(expected, BoardSnapshot.of(decoder.getBoard()));
+        }
+
+        for (SocketChannel client: clients) {
+            client.close();
+        }
+        for (SocketChannel player: players) {
+            player.close();
+        }
+    }
+
+    @Test
+    void match() throws Exception {
+        SocketChannel first = connect();
+        SocketChannel second = connect();
+        send(first, Protocol.match(TEST_PLAYERS, "default", "Alice"));
+        send(second, Protocol.match(TEST_PLAYERS, "default", "Bob"));
+
+        ByteBuffer joined = receive(first);
+        Assertions.assertEquals(Protocol.JOINED, joined.get(), "The first client should have joined a game!");
+        int gameId = joined.getInt();
+        Assertions.assertEquals(0, joined.get(), "The first client should be the first player!");
+        joined = receive(second);
+        Assertions.assertEquals(Protocol.JOINED, joined.get(), "The second client should have joined a game!");
+        Assertions.assertEquals(gameId, joined.getInt(), "The clients should have joined the same game!");
+        Assertions.assertEquals(1, joined.get(), "The second client should be the second player!");
+
+        StateDecoder decoder = new StateDecoder();
+        decoder.apply(receive(second));
+        Assertions.assertEquals("Bob", decoder.getBoard().getPlayer(1).getName(), "The client should see the players of the game!");
+
+        first.close();
+        second.close();
+    }
+
+    @Test
+    void truncatedFrame() throws Exception {
+        HostedGame game = createGame(7);
+        SocketChannel player = connect();
+        send(player, Protocol.join(game.id, 0));
+        Assertions.assertEquals(Protocol.JOINED, receive(player).get(), "The player should have joined the game!");
+        Assertions.assertTrue(new StateDecoder().apply(receive(player)), "The player should receive the state of the game!");
+
+        SocketChannel intruder = connect();
+        send(intruder, Protocol.finishFrame(Protocol.startFrame(Protocol.JOIN, 0)));
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        Assertions.assertEquals(-1, intruder.read(buffer), "The client sending a truncated frame should be disconnected!");
+
+        SocketChannel spectator = connect();
+        send(spectator, Protocol.spectate(game.id));
+        Assertions.assertEquals(Protocol.JOINED, receive(spectator).get(), "The server should still accept clients!");
+        Assertions.assertTrue(new StateDecoder().apply(receive(spectator)), "The server should still serve the game!");
+        send(player, Protocol.program(new int[]{0, 1, 2, 3, 4}));
+        Assertions.assertEquals(Protocol.DELTA, receive(player).get(), "The server should still serve the players!");
+
+        intruder.close();
+        spectator.close();
+        player.close();
+    }
+
+    @Test
+    void disconnectWhileJoining() throws Exception {
+        HostedGame game = createGame(3);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        game.execute(gameController -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assertions.assertTrue(blocked.await(5, TimeUnit.SECONDS), "The game should be blocked!");
+
+        SocketChannel leaving = connect();
+        send(leaving, Protocol.join(game.id, 0));
+        leaving.close();
+        // a round trip of another client makes sure that the server noticed the disconnect
+        SocketChannel probe = connect();
+        send(probe, Protocol.spectate(-1));
+        Assertions.assertEquals(Protocol.ERROR, receive(probe).get(), "There should not be a game -1!");
+        release.countDown();
+
+        SocketChannel player = connect();
+        send(player, Protocol.join(game.id, 0));
+        Assertions.assertEquals(Protocol.JOINED, receive(player).get(), "The seat of the client which disconnected while joining should be free!");
+
+        probe.close();
+        player.close();
+    }
+
+    @Test
+    void removeGame() throws Exception {
+        HostedGame game = createGame(11);
+        SocketChannel player = connect();
+        send(player, Protocol.join(game.id, 0));
+        Assertions.assertEquals(Protocol.JOINED, receive(player).get(), "The player should have joined the game!");
+        Assertions.assertTrue(new StateDecoder().apply(receive(player)), "The player should receive the state of the game!");
+        SocketChannel spectator = connect();
+        send(spectator, Protocol.spectate(game.id));
+        Assertions.assertEquals(Protocol.JOINED, receive(spectator).get(), "The spectator should have joined the game!");
+        Assertions.assertTrue(new StateDecoder().apply(receive(spectator)), "The spectator should receive the state of the game!");
+        Assertions.assertEquals(1, server.getServedGamesNumber(), "The game should be served!");
+
+        host.remove(game);
+        Assertions.assertEquals(Protocol.ERROR, receive(player).get(), "The player should be notified that the game ended!");
+        Assertions.assertEquals(Protocol.ERROR, receive(spectator).get(), "The spectator should be notified that the game ended!");
+        Assertions.assertEquals(0, server.getServedGamesNumber(), "The ended game should not be served anymore!");
+
+        send(player, Protocol.program(new int[]{0, 1, 2, 3, 4}));
+        Assertions.assertEquals(Protocol.ERROR, receive(player).get(), "The player should not be in the ended game anymore!");
+        HostedGame other = createGame(12);
+        send(player, Protocol.join(other.id, 0));
+        Assertions.assertEquals(Protocol.JOINED, receive(player).get(), "The player should be able to join another game!");
+
+        spectator.close();
+        player.close();
+    }
+
+    @Test
+    void dropStateFrames() throws Exception {
+        ServerMetrics metrics = new ServerMetrics();
+        try (ServerSocketChannel listener = ServerSocketChannel.open();
+             Selector selector = Selector.open()) {
+            listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel client = SocketChannel.open(listener.getLocalAddress());
+            SocketChannel channel = listener.accept();
+            channel.configureBlocking(false);
+            Connection connection = new Connection(channel, channel.register(selector, SelectionKey.OP_READ), metrics);
+
+            ByteBuffer joined = Protocol.joined(1, 0);
+            ByteBuffer delta = Protocol.finishFrame(Protocol.startFrame(Protocol.DELTA, 16).putInt(1));
+            ByteBuffer keyframe = Protocol.finishFrame(Protocol.startFrame(Protocol.KEYFRAME, 16).putInt(2));
+            connection.send(joined);
+            connection.send(delta);
+            connection.send(keyframe);
+            connection.send(delta);
+            long total = joined.remaining() + keyframe.remaining() + 2L * delta.remaining();
+            Assertions.assertEquals(total, connection.getQueuedBytes(), "All frames should be queued!");
+            Assertions.assertEquals(4, metrics.getQueuedFrames(), "The metrics should count all queued frames!");
+
+            connection.dropStateFrames();
+            Assertions.assertEquals(joined.remaining(), connection.getQueuedBytes(), "Only the JOINED frame should be left in the queue!");
+            Assertions.assertEquals(3, metrics.getDroppedFrames(), "The metrics should count the dropped frames!");
+            Assertions.assertEquals(total, metrics.getMaxConnectionQueuedBytes(), "The metrics should record the longest queue!");
+
+            connection.flush();
+            Assertions.assertEquals(0, connection.getQueuedBytes(), "The queue should be written completely!");
+            Assertions.assertEquals(0, metrics.getQueuedBytes(), "No bytes should be queued anymore!");
+            client.configureBlocking(true);
+            Assertions.assertEquals(Protocol.JOINED, receive(client).get(), "The client should receive the JOINED frame only!");
+
+            connection.send(delta);
+            connection.close();
+            Assertions.assertEquals(3, metrics.getDroppedFrames(), "The frames discarded on close should not count as dropped!");
+            Assertions.assertEquals(1, metrics.getDiscardedFrames(), "The metrics should count the frames discarded on close!");
+            Assertions.assertEquals(0, metrics.getQueuedFrames(), "No frames should be queued anymore!");
+            client.close();
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+package dk.dtu.compute.se.pisd.roborally.server;
+
+import dk.dtu.compute.se.pisd.roborally.model.Phase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class LobbyTest {
+
+    private final int TEST_THREADS = 8;
+    private final int TEST_JOINS_PER_THREAD = 6000;
+
+    private GameHost host;
+
+    private Lobby lobby;
+
+    @BeforeEach
+    void setUp() {
+        host = new GameHost(2);
+        lobby = new Lobby(host);
+    }
+
+    @AfterEach
+    void tearDown() {
+        host.shutdown();
+    }
+
+    @Test
+    void formGame() throws Exception {
+        CompletableFuture<Lobby.Seat> first = lobby.join("Alice", 3, "default");
+        CompletableFuture<Lobby.Seat> other = lobby.join("Bob", 2, "default");
+        CompletableFuture<Lobby.Seat> second = lobby.join("Carol", 3, "default");
+        Assertions.assertFalse(first.isDone(), "There should not be a game with two of three players!");
+        Assertions.assertEquals(3, lobby.getWaitingNumber(), "All players should be waiting!");
+
+        CompletableFuture<Lobby.Seat> third = lobby.join("Dave", 3, "default");
+        Lobby.Seat seat = third.get(1, TimeUnit.SECONDS);
+        Assertions.assertSame(seat.game, first.get().game, "The players should be in the same game!");
+        Assertions.assertSame(seat.game, second.get().game, "The players should be in the same game!");
+        Assertions.assertEquals(2, seat.playerNo, "The players should be seated in the order of joining!");
+        Assertions.assertFalse(other.isDone(), "The player waiting for a two player game should still wait!");
+        Assertions.assertEquals(1, lobby.getWaitingNumber(), "Only one player should still be waiting!");
+
+        String name = seat.game.submit(gameController -> gameController.board.getPlayer(1).getName()).get();
+        Assertions.assertEquals("Carol", name, "The player should have the name given when joining!");
+        Phase phase = seat.game.submit(gameController -> gameController.board.getPhase()).get();
+        Assertions.assertEquals(Phase.PROGRAMMING, phase, "The new game should be started!");
+    }
+
+    @Test
+    void leave() throws Exception {
+        CompletableFuture<Lobby.Seat> first = lobby.join("Alice", 3, "default");
+        CompletableFuture<Lobby.Seat> second = lobby.join("Bob", 3, "default");
+        Assertions.assertTrue(lobby.leave(first), "A waiting player should be able to leave!");
+        Assertions.assertTrue(first.isCancelled(), "The seat of the player who left should be cancelled!");
+        Assertions.assertEquals(1, lobby.getWaitingNumber(), "The player who left should not be waiting anymore!");
+
+        CompletableFuture<Lobby.Seat> third = lobby.join("Carol", 3, "default");
+        Assertions.assertFalse(third.isDone(), "The player who left should not be counted for a game!");
+        CompletableFuture<Lobby.Seat> fourth = lobby.join("Dave", 3, "default");
+        Lobby.Seat seat = fourth.get(1, TimeUnit.SECONDS);
+        Assertions.assertEquals(0, second.get().playerNo, "The player after the one who left should get the first seat!");
+        Assertions.assertSame(seat.game, third.get().game, "The remaining players should be in the same game!");
+        String name = seat.game.submit(gameController -> gameController.board.getPlayer(0).getName()).get();
+        Assertions.assertEquals("Bob", name, "The player who left should not be seated!");
+        Assertions.assertEquals(0, lobby.getWaitingNumber(), "No player should be waiting anymore!");
+        Assertions.assertFalse(lobby.leave(second), "A seated player should not be able to leave the lobby!");
+    }
+
+    @Test
+    void concurrentJoins() throws Exception {
+        List<List<CompletableFuture<Lobby.Seat>>> seats = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < TEST_THREADS; t++) {
+            List<CompletableFuture<Lobby.Seat>> threadSeats = new ArrayList<>();
+            seats.add(threadSeats);
+            int players = 2 + t % 3;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < TEST_JOINS_PER_THREAD; i++) {
+                    threadSeats.add(lobby.join("Player " + i, players, "board " + (i % 2)));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        long startTime = System.nanoTime();
+        start.countDown();
+        for (Thread thread: threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+
+        int joins = TEST_THREADS * TEST_JOINS_PER_THREAD;
+        Assertions.assertEquals(joins, lobby.getJoins(), "All joins should have been counted!");
+        Assertions.assertEquals(0, lobby.getWaitingNumber(), "Every player should be in a game!");
+        Assertions.assertTrue(joins / seconds > 10000, "The lobby should handle more than 10000 joins per second, but handled " + (int) (joins / seconds) + "!");
+
+        Set<String> taken = new HashSet<>();
+        for (List<CompletableFuture<Lobby.Seat>> threadSeats: seats) {
+            for (CompletableFuture<Lobby.Seat> future: threadSeats) {
+                Lobby.Seat seat = future.get(1, TimeUnit.SECONDS);
+                Assertions.assertTrue(taken.add(seat.game.id + ":" + seat.playerNo), "No seat should be taken twice!");
+            }
+        }
+        Assertions.assertEquals(lobby.getGames(), host.getGamesNumber(), "All games should be hosted!");
+    }
+
+}